@@ -0,0 +1,73 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 线程池配置，前缀 hmdp.executor
+ *              每个线程池通过名字声明，未在配置文件中声明的使用这里的默认值
+ *              例如：hmdp.executor.pools.cache-rebuild.max-size=8
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "hmdp.executor")
+public class ExecutorProperties {
+
+    /**
+     * 关闭时等待队列中任务执行完毕的最长时间（秒）
+     */
+    private long awaitTerminationSeconds = 10;
+
+    private Map<String, Pool> pools = new LinkedHashMap<>();
+
+    public ExecutorProperties() {
+        //缓存重建
+        pools.put("cache-rebuild", new Pool(2, 5, 3, 3, RejectPolicy.DISCARD_OLDEST));
+        //清理失效命名空间的旧key，单线程慢慢删
+        pools.put("cache-sweeper", new Pool(1, 1, 60, 16, RejectPolicy.DISCARD));
+        //关注动态推送到粉丝收件箱，队列满时由发布者自己推送
+        pools.put("feed-fanout", new Pool(2, 4, 60, 1024, RejectPolicy.ABORT));
+        //启动时加载内存索引
+        pools.put("index-loader", new Pool(2, 2, 60, 16, RejectPolicy.ABORT));
+        //异步执行分页COUNT，队列满时拒绝，下次查询会重新提交
+        pools.put("page-count", new Pool(1, 2, 60, 64, RejectPolicy.ABORT));
+        //每月归档签到位图，全量SCAN耗时较长，不占用定时任务线程；已有归档在执行时丢弃
+        pools.put("sign-rollup", new Pool(1, 1, 60, 1, RejectPolicy.DISCARD));
+        //秒杀订单异步处理，只允许一个消费者线程
+        pools.put("seckill-order", new Pool(1, 1, 0, 1, RejectPolicy.ABORT));
+    }
+
+    @Data
+    public static class Pool {
+        private int coreSize = 1;
+        private int maxSize = 1;
+        private long keepAliveSeconds = 60;
+        private int queueCapacity = 1024;
+        private RejectPolicy rejectPolicy = RejectPolicy.ABORT;
+        /**
+         * 是否使用虚拟线程，运行时JDK不支持时自动退回平台线程
+         */
+        private boolean virtual = false;
+
+        public Pool() {
+        }
+
+        public Pool(int coreSize, int maxSize, long keepAliveSeconds, int queueCapacity, RejectPolicy rejectPolicy) {
+            this.coreSize = coreSize;
+            this.maxSize = maxSize;
+            this.keepAliveSeconds = keepAliveSeconds;
+            this.queueCapacity = queueCapacity;
+            this.rejectPolicy = rejectPolicy;
+        }
+    }
+
+    public enum RejectPolicy {
+        ABORT, CALLER_RUNS, DISCARD, DISCARD_OLDEST
+    }
+}
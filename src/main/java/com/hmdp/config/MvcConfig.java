@@ -1,13 +1,24 @@
 package com.hmdp.config;
 
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.utils.AdminInterceptor;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.ETagInterceptor;
 import com.hmdp.utils.LoginInterceptor;
 import com.hmdp.utils.RefreshTokenInterceptor;
+import com.hmdp.utils.SessionCache;
+import com.hmdp.utils.SnapshotRegistry;
+import com.hmdp.utils.UvCounter;
+import com.hmdp.utils.UvInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.Set;
+import java.util.stream.Collectors;
+
 /**
  * @author smin
  * @date 2023/5/12
@@ -17,11 +28,26 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 public class MvcConfig implements WebMvcConfigurer {
 
     @Autowired
-    private StringRedisTemplate stringRedisTemplate;
+    private SessionCache sessionCache;
+    @Autowired
+    private CacheClient cacheClient;
+    @Autowired
+    private SnapshotRegistry snapshotRegistry;
+    @Autowired
+    private UvCounter uvCounter;
+    /**
+     * 可以访问运维接口的用户id，逗号分隔
+     */
+    @Value("${hmdp.admin.user-ids:}")
+    private String adminIds;
+
+    private Set<Long> parseAdminIds() {
+        return StrUtil.split(adminIds, ',', true, true).stream().map(Long::valueOf).collect(Collectors.toSet());
+    }
 
     public void addInterceptors(InterceptorRegistry registry) {
         //刷新token的拦截器
-        registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate)).addPathPatterns("/**").order(0);
+        registry.addInterceptor(new RefreshTokenInterceptor(sessionCache)).addPathPatterns("/**").order(0);
         //登录拦截器
         registry.addInterceptor(new LoginInterceptor())
                 .excludePathPatterns(
@@ -30,9 +56,18 @@ public class MvcConfig implements WebMvcConfigurer {
                         "/shop-type/**",
                         "/upload/**",
                         "/blog/hot",
+                        "/blog/search",
                         "/user/code",
                         "/user/login"
                 ).order(1);
+        //运维接口只允许管理员访问
+        registry.addInterceptor(new AdminInterceptor(parseAdminIds())).addPathPatterns("/admin/**").order(1);
+        //UV统计拦截器，只记录到本地缓冲；必须在条件GET之前，返回304的重复访问也要计入
+        registry.addInterceptor(new UvInterceptor(uvCounter))
+                .addPathPatterns("/shop/**", "/blog/**").order(2);
+        //条件GET拦截器
+        registry.addInterceptor(new ETagInterceptor(cacheClient, snapshotRegistry))
+                .addPathPatterns("/shop/**", "/shop-type/**", "/voucher/**").order(3);
 
     }
 
@@ -2,16 +2,36 @@ package com.hmdp.config;
 
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
-import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.hmdp.mapper.BlogMapper;
+import com.hmdp.mapper.ShopMapper;
+import com.hmdp.utils.ExecutorRegistry;
+import com.hmdp.utils.PageCountInterceptor;
+import com.hmdp.utils.PageCountPolicy;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 public class MybatisConfig {
     @Bean
-    public MybatisPlusInterceptor mybatisPlusInterceptor() {
+    public MybatisPlusInterceptor mybatisPlusInterceptor(StringRedisTemplate stringRedisTemplate, ExecutorRegistry executorRegistry) {
         MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
-        interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.MYSQL));
+        interceptor.addInnerInterceptor(new PageCountInterceptor(DbType.MYSQL, pageCountPolicies(),
+                stringRedisTemplate, executorRegistry.get("page-count")));
         return interceptor;
     }
+
+    /**
+     * 分页COUNT策略，key是mapper或者查询的id，未配置的使用EXACT
+     */
+    private Map<String, PageCountPolicy> pageCountPolicies() {
+        Map<String, PageCountPolicy> policies = new HashMap<>();
+        // 店铺和博客列表的客户端都不读取total
+        policies.put(ShopMapper.class.getName(), PageCountPolicy.SKIP);
+        policies.put(BlogMapper.class.getName(), PageCountPolicy.SKIP);
+        return policies;
+    }
 }
@@ -0,0 +1,183 @@
+package com.hmdp.controller;
+
+import com.hmdp.dto.Result;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.BlogHotRanking;
+import com.hmdp.utils.BlogSearchIndex;
+import com.hmdp.utils.ExecutorRegistry;
+import com.hmdp.utils.ShopLeaderboard;
+import com.hmdp.utils.SnapshotRegistry;
+import com.hmdp.utils.UvCounter;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.Resource;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 运维接口，只允许 hmdp.admin.user-ids 中配置的管理员访问（见AdminInterceptor）
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    @Resource
+    private ExecutorRegistry executorRegistry;
+    @Resource
+    private IShopService shopService;
+    @Resource
+    private IUserService userService;
+    @Resource
+    private SnapshotRegistry snapshotRegistry;
+    @Resource
+    private ShopLeaderboard shopLeaderboard;
+    @Resource
+    private BlogHotRanking blogHotRanking;
+    @Resource
+    private BlogSearchIndex blogSearchIndex;
+    @Resource
+    private UvCounter uvCounter;
+
+    /**
+     * 查询线程池运行状态：队列长度、活跃线程、拒绝次数、任务耗时
+     * @return 各线程池的统计信息
+     */
+    @GetMapping("/executors")
+    public Result executorStats() {
+        return Result.ok(executorRegistry.stats());
+    }
+
+    /**
+     * 使所有店铺缓存失效
+     * @return 无
+     */
+    @DeleteMapping("/cache/shop")
+    public Result invalidateShopCache() {
+        shopService.invalidateShopCache();
+        return Result.ok();
+    }
+
+    /**
+     * 从数据库重建店铺GEO集合
+     * @return 加载的店铺数量
+     */
+    @PostMapping("/shop/geo/load")
+    public Result loadShopGeo() {
+        return Result.ok(shopService.loadShopGeo());
+    }
+
+    /**
+     * 从数据库重建按类型浏览的店铺列表
+     * @return 店铺数量
+     */
+    @PostMapping("/shop/listing/rebuild")
+    public Result rebuildShopTypeListing() {
+        return Result.ok(shopService.rebuildShopTypeListing());
+    }
+
+    /**
+     * 从数据库重建店铺评分榜
+     * @return 写入的店铺数量
+     */
+    @PostMapping("/shop/rank/rebuild")
+    public Result rebuildShopRank() {
+        return Result.ok(shopLeaderboard.rebuildScoreBoards());
+    }
+
+    /**
+     * 从数据库重建博文热度榜
+     * @param days 只计算最近几天发布的博文
+     * @return 榜单中的博文数量
+     */
+    @PostMapping("/blog/hot/rebuild")
+    public Result rebuildBlogHot(@RequestParam(value = "days", defaultValue = "30") Integer days) {
+        return Result.ok(blogHotRanking.rebuild(days));
+    }
+
+    /**
+     * 从数据库重建博文检索索引，并写入快照
+     * @return 索引中的博文数量
+     */
+    @PostMapping("/blog/search/rebuild")
+    public Result rebuildBlogSearch() {
+        int count = blogSearchIndex.rebuild();
+        blogSearchIndex.snapshot();
+        return Result.ok(count);
+    }
+
+    /**
+     * 归档某个月的签到位图
+     * @param month 月份，格式yyyyMM，只能是上上个月及更早
+     * @return 归档的用户数
+     */
+    @PostMapping("/sign/rollup")
+    public Result rollupSign(@RequestParam("month") String month) {
+        YearMonth target;
+        try {
+            target = YearMonth.parse(month, DateTimeFormatter.ofPattern("yyyyMM"));
+        } catch (DateTimeParseException e) {
+            return Result.fail("月份格式错误");
+        }
+        if (target.isAfter(YearMonth.now().minusMonths(2))) {
+            return Result.fail("只能归档上上个月及更早的签到数据");
+        }
+        return Result.ok(userService.rollupSign(month));
+    }
+
+    /**
+     * 查询店铺或博文的独立访客数
+     * @param type 类型，shop或blog
+     * @param id 店铺或博文id
+     * @param period 统计周期：DAY、WEEK、MONTH
+     * @param date 周期内的任意一天，格式yyyy-MM-dd，默认今天
+     * @return 独立访客数（HyperLogLog估算值）
+     */
+    @GetMapping("/uv")
+    public Result queryUv(@RequestParam("type") String type, @RequestParam("id") Long id,
+                          @RequestParam(value = "period", defaultValue = "DAY") UvCounter.Period period,
+                          @RequestParam(value = "date", required = false) String date) {
+        LocalDate day;
+        try {
+            day = date == null ? LocalDate.now() : LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            return Result.fail("日期格式错误");
+        }
+        return Result.ok(uvCounter.count(type, id.toString(), period, day));
+    }
+
+    /**
+     * 手动合并某一周或某个月的UV数据
+     * @param period WEEK或MONTH
+     * @param date 周期内的任意一天，格式yyyy-MM-dd
+     * @return 合并的对象数量
+     */
+    @PostMapping("/uv/rollup")
+    public Result rollupUv(@RequestParam("period") UvCounter.Period period, @RequestParam("date") String date) {
+        LocalDate day;
+        try {
+            day = LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            return Result.fail("日期格式错误");
+        }
+        if (period == UvCounter.Period.DAY || !UvCounter.isFinished(period, day)) {
+            return Result.fail("只能合并已经结束的周或月");
+        }
+        return Result.ok(uvCounter.rollup(period, day));
+    }
+
+    /**
+     * 字典表数据修改后，通知所有节点重新加载快照
+     * @param name 快照名，例如 shop-type
+     * @return 无
+     */
+    @PostMapping("/snapshot/{name}/publish")
+    public Result publishSnapshot(@PathVariable("name") String name) {
+        snapshotRegistry.publish(name);
+        return Result.ok();
+    }
+}
@@ -1,9 +1,12 @@
 package com.hmdp.controller;
 
 
-import org.springframework.web.bind.annotation.RequestMapping;
+import com.hmdp.dto.Result;
+import com.hmdp.entity.BlogComments;
+import com.hmdp.service.IBlogCommentsService;
+import org.springframework.web.bind.annotation.*;
 
-import org.springframework.web.bind.annotation.RestController;
+import javax.annotation.Resource;
 
 /**
  * <p>
@@ -17,4 +20,47 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/blog-comments")
 public class BlogCommentsController {
 
+    @Resource
+    private IBlogCommentsService blogCommentsService;
+
+    /**
+     * 发表评论或回复
+     * @param comment 评论，回复时传parentId（一级评论id）和answerId（回复的评论id）
+     * @return 评论id
+     */
+    @PostMapping
+    public Result saveComment(@RequestBody BlogComments comment) {
+        return blogCommentsService.saveComment(comment);
+    }
+
+    /**
+     * 游标分页查询博文的评论
+     * @param blogId 博文id
+     * @param sortBy time（默认）或 liked
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 一级评论列表（附带前几条回复）和下一页的游标
+     */
+    @GetMapping("/of/blog")
+    public Result queryComments(@RequestParam("blogId") Long blogId,
+                                @RequestParam(value = "sortBy", required = false) String sortBy,
+                                @RequestParam(value = "cursor", required = false) String cursor) {
+        return blogCommentsService.queryComments(blogId, sortBy, cursor);
+    }
+
+    /**
+     * 游标分页查询一级评论的全部回复，评论列表中只附带前几条
+     * @param parentId 一级评论id
+     * @param cursor 上一页返回的游标，第一页不传
+     * @return 回复列表和下一页的游标
+     */
+    @GetMapping("/replies")
+    public Result queryReplies(@RequestParam("parentId") Long parentId,
+                               @RequestParam(value = "cursor", required = false) String cursor) {
+        return blogCommentsService.queryReplies(parentId, cursor);
+    }
+
+    @PutMapping("/like/{id}")
+    public Result likeComment(@PathVariable("id") Long id) {
+        return blogCommentsService.likeComment(id);
+    }
 }
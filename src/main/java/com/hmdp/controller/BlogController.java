@@ -1,19 +1,27 @@
 package com.hmdp.controller;
 
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.dto.CursorResult;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.ScrollResult;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
-import com.hmdp.entity.User;
 import com.hmdp.service.IBlogService;
-import com.hmdp.service.IUserService;
+import com.hmdp.service.IUserSummaryService;
+import com.hmdp.utils.BlogHotRanking;
+import com.hmdp.utils.KeysetPager;
 import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
+import com.hmdp.utils.UvTracked;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * <p>
@@ -30,54 +38,138 @@ public class BlogController {
     @Resource
     private IBlogService blogService;
     @Resource
-    private IUserService userService;
+    private IUserSummaryService userSummaryService;
+    @Resource
+    private BlogHotRanking blogHotRanking;
 
     @PostMapping
     public Result saveBlog(@RequestBody Blog blog) {
-        // 获取登录用户
-        UserDTO user = UserHolder.getUser();
-        blog.setUserId(user.getId());
-        // 保存探店博文
-        blogService.save(blog);
-        // 返回id
-        return Result.ok(blog.getId());
+        // 保存探店博文并加入热度榜
+        return blogService.saveBlog(blog);
     }
 
     @PutMapping("/like/{id}")
     public Result likeBlog(@PathVariable("id") Long id) {
-        // 修改点赞数量
-        blogService.update()
-                .setSql("liked = liked + 1").eq("id", id).update();
-        return Result.ok();
+        // 点赞或取消点赞，点赞数由后台定时写回数据库
+        return blogService.likeBlog(id);
     }
 
     @GetMapping("/of/me")
-    public Result queryMyBlog(@RequestParam(value = "current", defaultValue = "1") Integer current) {
+    public Result queryMyBlog(@RequestParam(value = "current", defaultValue = "1") Integer current,
+                              @RequestParam(value = "cursor", required = false) String cursor) {
         // 获取登录用户
         UserDTO user = UserHolder.getUser();
+        // 传入游标时按id倒序使用游标分页
+        if (cursor != null) {
+            CursorResult<Blog> result = KeysetPager.page(blogService.getBaseMapper(),
+                    new QueryWrapper<Blog>().eq("user_id", user.getId()),
+                    "id", Blog::getId, Blog::getId, cursor, SystemConstants.MAX_PAGE_SIZE, true);
+            if (result == null) {
+                return Result.fail("游标错误");
+            }
+            blogService.fillLiked(result.getList());
+            return Result.ok(result);
+        }
         // 根据用户查询
         Page<Blog> page = blogService.query()
                 .eq("user_id", user.getId()).page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
         // 获取当前页数据
         List<Blog> records = page.getRecords();
+        blogService.fillLiked(records);
         return Result.ok(records);
     }
 
     @GetMapping("/hot")
-    public Result queryHotBlog(@RequestParam(value = "current", defaultValue = "1") Integer current) {
-        // 根据用户查询
-        Page<Blog> page = blogService.query()
-                .orderByDesc("liked")
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 获取当前页数据
-        List<Blog> records = page.getRecords();
+    public Result queryHotBlog(@RequestParam(value = "current", defaultValue = "1") Integer current,
+                               @RequestParam(value = "cursor", required = false) String cursor) {
+        // 传入游标时在热度榜上按 (热度, id) 游标分页，与按页码查询的顺序一致
+        if (cursor != null) {
+            if (!blogHotRanking.isReady()) {
+                return Result.fail("热度榜加载中，请稍后再试");
+            }
+            CursorResult<Blog> result = blogService.queryHotBlog(cursor);
+            if (result == null) {
+                return Result.fail("游标错误");
+            }
+            fillBlogUser(result.getList());
+            blogService.fillLiked(result.getList());
+            return Result.ok(result);
+        }
+        // 按热度查询当前页
+        List<Blog> records = blogService.queryHotBlog(current);
         // 查询用户
-        records.forEach(blog ->{
-            Long userId = blog.getUserId();
-            User user = userService.getById(userId);
-            blog.setName(user.getNickName());
-            blog.setIcon(user.getIcon());
-        });
+        fillBlogUser(records);
+        blogService.fillLiked(records);
+        return Result.ok(records);
+    }
+
+    /**
+     * 滚动分页查询关注的用户发布的博文
+     * @param max 上一页返回的minTime，第一页传当前时间戳
+     * @param offset 上一页返回的offset，第一页传0
+     * @return 博文列表、minTime、offset
+     */
+    @GetMapping("/of/follow")
+    public Result queryBlogOfFollow(@RequestParam("lastId") Long max,
+                                    @RequestParam(value = "offset", defaultValue = "0") Integer offset) {
+        ScrollResult result = blogService.queryBlogOfFollow(max, offset);
+        @SuppressWarnings("unchecked")
+        List<Blog> blogs = (List<Blog>) result.getList();
+        fillBlogUser(blogs);
+        blogService.fillLiked(blogs);
+        return Result.ok(result);
+    }
+
+    /**
+     * 按关键字检索博文
+     * @param keyword 关键字，匹配标题和正文
+     * @param current 页码
+     * @return 当前页博文
+     */
+    @GetMapping("/search")
+    public Result searchBlog(@RequestParam("keyword") String keyword,
+                             @RequestParam(value = "current", defaultValue = "1") Integer current) {
+        if (current < 1) {
+            return Result.fail("页码错误");
+        }
+        // 按相关度排序需要先取出前面所有页，只允许查询前MAX_SEARCH_PAGE页
+        if (current > SystemConstants.MAX_SEARCH_PAGE) {
+            return Result.ok(Collections.emptyList());
+        }
+        List<Blog> records = blogService.searchBlog(keyword, current);
+        fillBlogUser(records);
+        blogService.fillLiked(records);
         return Result.ok(records);
     }
+
+    /**
+     * 查询博文详情
+     * @param id 博文id
+     * @return 博文详情，包括作者信息和当前用户是否点赞
+     */
+    @GetMapping("/{id}")
+    @UvTracked(type = "blog")
+    public Result queryBlogById(@PathVariable("id") Long id) {
+        Blog blog = blogService.getById(id);
+        if (blog == null) {
+            return Result.fail("博文不存在");
+        }
+        List<Blog> blogs = Collections.singletonList(blog);
+        fillBlogUser(blogs);
+        blogService.fillLiked(blogs);
+        return Result.ok(blog);
+    }
+
+    private void fillBlogUser(List<Blog> records) {
+        // 一次批量查询当前页所有作者
+        Map<Long, UserDTO> users = userSummaryService.queryByIds(
+                records.stream().map(Blog::getUserId).collect(Collectors.toList()));
+        records.forEach(blog -> {
+            UserDTO user = users.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        });
+    }
 }
@@ -1,16 +1,23 @@
 package com.hmdp.controller;
 
 
-import cn.hutool.core.util.StrUtil;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.dto.CursorResult;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.ShopFilter;
 import com.hmdp.entity.Shop;
 import com.hmdp.service.IShopService;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.utils.HttpCacheable;
+import com.hmdp.utils.KeysetPager;
+import com.hmdp.utils.ShopTypeListing;
 import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UvTracked;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
 
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+
 /**
  * <p>
  * 前端控制器
@@ -32,6 +39,8 @@ public class ShopController {
      * @return 商铺详情数据
      */
     @GetMapping("/{id}")
+    @HttpCacheable(key = CACHE_SHOP_KEY, pathVariable = "id", namespaced = true)
+    @UvTracked(type = "shop")
     public Result queryShopById(@PathVariable("id") Long id) {
         return shopService.queryById(id);
     }
@@ -43,10 +52,8 @@ public class ShopController {
      */
     @PostMapping
     public Result saveShop(@RequestBody Shop shop) {
-        // 写入数据库
-        shopService.save(shop);
-        // 返回店铺id
-        return Result.ok(shop.getId());
+        // 写入数据库，返回店铺id
+        return shopService.saveShop(shop);
     }
 
     /**
@@ -64,19 +71,31 @@ public class ShopController {
      * 根据商铺类型分页查询商铺信息
      * @param typeId 商铺类型
      * @param current 页码
+     * @param x 经度，和纬度同时传入时按距离排序
+     * @param y 纬度
+     * @param cursor 游标，传入时（第一页传空字符串）按 (sortBy, id) 游标分页，忽略current
+     * @param sortBy 排序方式：score（默认）、sold、avgPrice，按距离查询时不生效
      * @return 商铺列表
      */
     @GetMapping("/of/type")
     public Result queryShopByType(
             @RequestParam("typeId") Integer typeId,
-            @RequestParam(value = "current", defaultValue = "1") Integer current
+            @RequestParam(value = "current", defaultValue = "1") Integer current,
+            @RequestParam(value = "x", required = false) Double x,
+            @RequestParam(value = "y", required = false) Double y,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "sortBy", required = false) String sortBy
     ) {
-        // 根据类型分页查询
-        Page<Shop> page = shopService.query()
-                .eq("type_id", typeId)
-                .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE));
-        // 返回数据
-        return Result.ok(page.getRecords());
+        if (cursor != null && (x == null || y == null)) {
+            // 与按页码查询的排序一致，同值时按id
+            ShopTypeListing.Sort sort = ShopTypeListing.Sort.of(sortBy);
+            CursorResult<Shop> result = KeysetPager.page(shopService.getBaseMapper(),
+                    new QueryWrapper<Shop>().eq("type_id", typeId),
+                    sort.getColumn(), sort.getGetter(), Shop::getId, cursor, SystemConstants.DEFAULT_PAGE_SIZE,
+                    sort.isDesc());
+            return result == null ? Result.fail("游标错误") : Result.ok(result);
+        }
+        return shopService.queryShopByType(typeId, current, x, y, sortBy);
     }
 
     /**
@@ -90,11 +109,46 @@ public class ShopController {
             @RequestParam(value = "name", required = false) String name,
             @RequestParam(value = "current", defaultValue = "1") Integer current
     ) {
-        // 根据类型分页查询
-        Page<Shop> page = shopService.query()
-                .like(StrUtil.isNotBlank(name), "name", name)
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 返回数据
-        return Result.ok(page.getRecords());
+        return shopService.queryShopByName(name, current);
+    }
+
+    /**
+     * 店铺名称输入提示
+     * @param prefix 已输入的内容
+     * @return 店铺名称列表
+     */
+    @GetMapping("/of/name/suggest")
+    public Result suggestShopName(@RequestParam("prefix") String prefix) {
+        return shopService.suggestShopName(prefix);
+    }
+
+    /**
+     * 按类型、商圈、价格区间、最低评分多条件筛选商铺
+     * @param filter 筛选条件，为空的条件不参与筛选
+     * @param current 页码
+     * @return 商铺列表（按评分排序）、总数和各条件的数量
+     */
+    @GetMapping("/filter")
+    public Result filterShops(
+            ShopFilter filter,
+            @RequestParam(value = "current", defaultValue = "1") Integer current
+    ) {
+        return shopService.filterShops(filter, current);
+    }
+
+    /**
+     * 商铺排行榜
+     * @param board 榜单：sold-day 今日销量、sold-week 本周销量（默认）、score 评分
+     * @param typeId 商铺类型，不传时为全部类型的榜单
+     * @param limit 返回数量，最多100
+     * @return 按名次排列的商铺列表
+     */
+    @GetMapping("/rank")
+    public Result queryShopRank(
+            @RequestParam(value = "board", required = false) String board,
+            @RequestParam(value = "typeId", required = false) Long typeId,
+            @RequestParam(value = "limit", defaultValue = "10") Integer limit
+    ) {
+        return shopService.queryShopRank(board, typeId, limit);
     }
 }
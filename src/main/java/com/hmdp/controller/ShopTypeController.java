@@ -1,15 +1,18 @@
 package com.hmdp.controller;
 
 
-import com.hmdp.dto.Result;
-import com.hmdp.entity.ShopType;
 import com.hmdp.service.IShopTypeService;
+import com.hmdp.utils.HttpCacheable;
+import com.hmdp.utils.RawResultCache;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.annotation.Resource;
-import java.util.List;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static com.hmdp.utils.RedisConstants.SNAPSHOT_SHOP_TYPE;
 
 /**
  * <p>
@@ -26,7 +29,8 @@ public class ShopTypeController {
     private IShopTypeService typeService;
 
     @GetMapping("list")
-    public Result queryTypeList() {
-        return typeService.queryTypeList();
+    @HttpCacheable(key = SNAPSHOT_SHOP_TYPE, snapshot = true, maxAge = 600)
+    public void queryTypeList(HttpServletResponse response) throws IOException {
+        RawResultCache.write(response, typeService.queryTypeList());
     }
 }
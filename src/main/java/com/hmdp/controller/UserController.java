@@ -55,9 +55,8 @@ public class UserController {
      * @return 无
      */
     @PostMapping("/logout")
-    public Result logout(){
-        // TODO 实现登出功能
-        return Result.fail("功能未完成");
+    public Result logout(@RequestHeader(value = "authorization", required = false) String token){
+        return userService.logout(token);
     }
 
     @GetMapping("/me")
@@ -66,6 +65,25 @@ public class UserController {
         return Result.ok(user);
     }
 
+    /**
+     * 今日签到
+     * @return 本次是否新签到
+     */
+    @PostMapping("/sign")
+    public Result sign() {
+        return userService.sign();
+    }
+
+    /**
+     * 签到统计
+     * @param month 月份，格式yyyyMM，不传时为本月
+     * @return 签到天数、签到日期、连续签到天数
+     */
+    @GetMapping("/sign/stats")
+    public Result signStats(@RequestParam(value = "month", required = false) String month) {
+        return userService.signStats(month);
+    }
+
     @GetMapping("/info/{id}")
     public Result info(@PathVariable("id") Long userId){
         // 查询详情
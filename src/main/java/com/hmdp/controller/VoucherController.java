@@ -4,9 +4,15 @@ package com.hmdp.controller;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.HttpCacheable;
+import com.hmdp.utils.RawResultCache;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static com.hmdp.utils.RedisConstants.CACHE_VOUCHER_RESULT_KEY;
 
 /**
  * <p>
@@ -51,7 +57,8 @@ public class VoucherController {
      * @return 优惠券列表
      */
     @GetMapping("/list/{shopId}")
-    public Result queryVoucherOfShop(@PathVariable("shopId") Long shopId) {
-       return voucherService.queryVoucherOfShop(shopId);
+    @HttpCacheable(key = CACHE_VOUCHER_RESULT_KEY, pathVariable = "shopId")
+    public void queryVoucherOfShop(@PathVariable("shopId") Long shopId, HttpServletResponse response) throws IOException {
+        RawResultCache.writeWithEtag(response, voucherService.queryVoucherOfShop(shopId));
     }
 }
@@ -0,0 +1,24 @@
+package com.hmdp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetResult<T> {
+    private List<T> list;
+    /**
+     * 满足所有条件的总数
+     */
+    private Integer total;
+    /**
+     * 各筛选维度每个取值的数量：维度 -> 取值 -> 数量，
+     * 统计某个维度时应用除该维度以外的其它条件，前端可以直接展示切换条件后的结果数量
+     */
+    private Map<String, Map<String, Integer>> facets;
+}
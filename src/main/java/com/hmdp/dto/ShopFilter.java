@@ -0,0 +1,24 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+/**
+ * 店铺多条件筛选的参数，为空的条件不参与筛选
+ */
+@Data
+public class ShopFilter {
+    private Long typeId;
+    private String area;
+    /**
+     * 价格区间下标，见 ShopFacetIndex.PRICE_BANDS
+     */
+    private Integer priceBand;
+    /**
+     * 最低评分，与Shop.score相同，为实际评分的10倍
+     */
+    private Integer minScore;
+    /**
+     * 为true时只返回正在营业的店铺
+     */
+    private Boolean openNow;
+}
@@ -2,6 +2,10 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.BlogComments;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
@@ -13,4 +17,18 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface BlogCommentsMapper extends BaseMapper<BlogComments> {
 
+    /**
+     * 一次查询多条一级评论各自最早的limit条回复
+     * @param parentIds 一级评论id
+     * @param limit 每条一级评论的回复数量
+     * @return 回复列表
+     */
+    List<BlogComments> queryReplies(@Param("parentIds") List<Long> parentIds, @Param("limit") int limit);
+
+    /**
+     * 一条UPDATE批量累加多条评论的点赞数
+     * @param deltas 评论id -> 点赞数增量
+     * @return 更新的行数
+     */
+    int incrLikedBatch(@Param("deltas") Map<Long, Integer> deltas);
 }
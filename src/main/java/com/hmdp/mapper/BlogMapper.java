@@ -2,6 +2,9 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.Blog;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Map;
 
 /**
  * <p>
@@ -13,4 +16,17 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface BlogMapper extends BaseMapper<Blog> {
 
+    /**
+     * 一条UPDATE批量累加多篇博文的点赞数
+     * @param deltas 博文id -> 点赞数增量
+     * @return 更新的行数
+     */
+    int incrLikedBatch(@Param("deltas") Map<Long, Integer> deltas);
+
+    /**
+     * 一条UPDATE批量累加多篇博文的评论数
+     * @param deltas 博文id -> 评论数增量
+     * @return 更新的行数
+     */
+    int incrCommentsBatch(@Param("deltas") Map<Long, Integer> deltas);
 }
@@ -0,0 +1,32 @@
+package com.hmdp.mapper;
+
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 已写回数据库的计数批次，与计数的UPDATE在同一个事务中写入，保证同一批增量只写回一次
+ *              CREATE TABLE tb_counter_batch (
+ *                  batch_id    VARCHAR(96) NOT NULL PRIMARY KEY,
+ *                  create_time DATETIME    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+ *                  KEY idx_create_time (create_time)
+ *              ) ENGINE = InnoDB;
+ */
+public interface CounterBatchMapper {
+
+    /**
+     * 记录批次
+     * @param batchId 批次id
+     * @return 1表示首次写入，0表示该批次已经写回过
+     */
+    int insertIgnore(@Param("batchId") String batchId);
+
+    /**
+     * 删除早于指定时间的批次记录
+     * @param time 时间
+     * @return 删除的行数
+     */
+    int deleteBefore(@Param("time") LocalDateTime time);
+}
@@ -2,6 +2,7 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.Follow;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
 
 /**
  * <p>
@@ -13,4 +14,12 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface FollowMapper extends BaseMapper<Follow> {
 
+    /**
+     * 插入关注关系，依赖唯一索引 uk_user_follow (user_id, follow_user_id)：
+     * ALTER TABLE tb_follow ADD UNIQUE KEY uk_user_follow (user_id, follow_user_id);
+     * @param userId 用户id
+     * @param followUserId 关注的用户id
+     * @return 1表示新关注，0表示已经关注过
+     */
+    int insertIgnore(@Param("userId") Long userId, @Param("followUserId") Long followUserId);
 }
@@ -1,5 +1,6 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.BlogComments;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -13,4 +14,34 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IBlogCommentsService extends IService<BlogComments> {
 
+    /**
+     * 当前用户发表评论或回复
+     * @param comment 评论，parentId为空或0时是一级评论
+     * @return 评论id
+     */
+    Result saveComment(BlogComments comment);
+
+    /**
+     * 游标分页查询博文的一级评论，每条附带最早的几条回复
+     * @param blogId 博文id
+     * @param sortBy time（默认，最新在前）或 liked（点赞最多在前）
+     * @param cursor 上一页返回的游标，第一页传空
+     * @return 评论列表和下一页的游标
+     */
+    Result queryComments(Long blogId, String sortBy, String cursor);
+
+    /**
+     * 游标分页查询一条一级评论的全部回复，按发表时间正序
+     * @param parentId 一级评论id
+     * @param cursor 上一页返回的游标，第一页传空
+     * @return 回复列表和下一页的游标
+     */
+    Result queryReplies(Long parentId, String cursor);
+
+    /**
+     * 当前用户点赞或取消点赞评论
+     * @param id 评论id
+     * @return 点赞后为true，取消点赞后为false
+     */
+    Result likeComment(Long id);
 }
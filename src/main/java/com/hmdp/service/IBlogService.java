@@ -1,8 +1,13 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.CursorResult;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.ScrollResult;
 import com.hmdp.entity.Blog;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -13,4 +18,59 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IBlogService extends IService<Blog> {
 
+    /**
+     * 当前用户点赞或取消点赞
+     * @param id 博文id
+     * @return 无
+     */
+    Result likeBlog(Long id);
+
+    /**
+     * 填充当前用户是否点赞过，并把尚未写回数据库的点赞数、评论数增量加到liked、comments上
+     * @param blogs 博文列表
+     */
+    void fillLiked(List<Blog> blogs);
+
+    /**
+     * 发布博文并加入热度榜
+     * @param blog 博文
+     * @return 博文id
+     */
+    Result saveBlog(Blog blog);
+
+    /**
+     * 按热度分页查询博文，热度榜未建立时按点赞数查询数据库
+     * @param current 页码
+     * @return 博文列表，未填充作者信息
+     */
+    List<Blog> queryHotBlog(Integer current);
+
+    /**
+     * 按热度游标分页查询博文，调用前需要确认热度榜已经建立
+     * @param cursor 上一页返回的游标，第一页传空字符串
+     * @return 博文列表和下一页的游标，未填充作者信息；游标格式错误时返回null
+     */
+    CursorResult<Blog> queryHotBlog(String cursor);
+
+    /**
+     * 滚动分页查询关注的用户发布的博文
+     * @param max 上一页返回的minTime，第一页传当前时间戳
+     * @param offset 上一页返回的offset，第一页传0
+     * @return 博文列表和下一页的游标，未填充作者信息
+     */
+    ScrollResult queryBlogOfFollow(Long max, Integer offset);
+
+    /**
+     * 发表评论后调用，累加评论数增量并标记热度待重算
+     * @param blogId 博文id
+     */
+    void onCommented(Long blogId);
+
+    /**
+     * 全文检索博文标题和正文
+     * @param keyword 关键字
+     * @param current 页码
+     * @return 当前页博文，按相关度和点赞数排序
+     */
+    List<Blog> searchBlog(String keyword, Integer current);
 }
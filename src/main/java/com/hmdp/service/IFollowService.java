@@ -1,5 +1,6 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.Follow;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -13,4 +14,46 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IFollowService extends IService<Follow> {
 
+    /**
+     * 当前用户关注或取消关注
+     * @param followUserId 被关注的用户
+     * @param isFollow true关注，false取消关注
+     * @return 无
+     */
+    Result follow(Long followUserId, Boolean isFollow);
+
+    /**
+     * 当前用户是否关注了followUserId
+     * @param followUserId 被关注的用户
+     * @return true/false
+     */
+    Result isFollow(Long followUserId);
+
+    /**
+     * 当前用户和id共同关注的用户
+     * @param id 另一个用户
+     * @return 用户列表
+     */
+    Result followCommons(Long id);
+
+    /**
+     * 用户的关注数和粉丝数
+     * @param userId 用户id
+     * @return followees、followers
+     */
+    Result queryFollowCount(Long userId);
+
+    /**
+     * 用户关注的所有用户id
+     * @param userId 用户id
+     * @return 升序排列的用户id，调用方不要修改
+     */
+    long[] queryFolloweeIds(Long userId);
+
+    /**
+     * 用户的粉丝数
+     * @param userId 用户id
+     * @return 粉丝数
+     */
+    long countFollowers(Long userId);
 }
@@ -1,6 +1,7 @@
 package com.hmdp.service;
 
 import com.hmdp.dto.Result;
+import com.hmdp.dto.ShopFilter;
 import com.hmdp.entity.Shop;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -16,5 +17,74 @@ public interface IShopService extends IService<Shop> {
 
     Result queryById(Long id);
 
+    Result saveShop(Shop shop);
+
     Result update(Shop shop);
+
+    /**
+     * 根据类型分页查询店铺，传入坐标时按距离由近到远排序，否则按sortBy排序
+     * @param typeId 店铺类型
+     * @param current 页码
+     * @param x 经度，可以为空
+     * @param y 纬度，可以为空
+     * @param sortBy 排序方式：score、sold、avgPrice
+     * @return 店铺列表
+     */
+    Result queryShopByType(Integer typeId, Integer current, Double x, Double y, String sortBy);
+
+    /**
+     * 从数据库全量重建按类型浏览的店铺列表
+     * @return 店铺数量
+     */
+    int rebuildShopTypeListing();
+
+    /**
+     * 根据名称关键字分页查询店铺，按评分、销量排序
+     * @param name 关键字，为空时查询全部
+     * @param current 页码
+     * @return 店铺列表
+     */
+    Result queryShopByName(String name, Integer current);
+
+    /**
+     * 店铺名称输入提示
+     * @param prefix 已输入的内容
+     * @return 店铺名称列表
+     */
+    Result suggestShopName(String prefix);
+
+    /**
+     * 多条件筛选店铺，按评分从高到低排序
+     * @param filter 筛选条件
+     * @param current 页码
+     * @return 店铺列表、总数和各条件的数量
+     */
+    Result filterShops(ShopFilter filter, Integer current);
+
+    /**
+     * 查询店铺排行榜
+     * @param board 榜单：sold-day、sold-week、score
+     * @param typeId 店铺类型，为空时查询全部类型
+     * @param limit 返回数量
+     * @return 按名次排列的店铺列表
+     */
+    Result queryShopRank(String board, Long typeId, Integer limit);
+
+    /**
+     * 从数据库全量加载店铺坐标到每个类型的GEO集合
+     * @return 店铺数量
+     */
+    int loadShopGeo();
+
+    /**
+     * 使所有店铺缓存失效，用于批量修改店铺类型等场景
+     */
+    void invalidateShopCache();
+
+    /**
+     * 增加店铺销量，先在本地聚合，定时批量写回数据库
+     * @param shopId 店铺id
+     * @param count 数量
+     */
+    void incrSold(Long shopId, int count);
 }
@@ -1,6 +1,5 @@
 package com.hmdp.service;
 
-import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -14,5 +13,9 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IShopTypeService extends IService<ShopType> {
 
-    Result queryTypeList();
+    /**
+     * 查询店铺类型列表
+     * @return 渲染好的Result json
+     */
+    byte[] queryTypeList();
 }
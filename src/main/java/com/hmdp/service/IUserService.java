@@ -21,4 +21,30 @@ public interface IUserService extends IService<User> {
     Result sendCode(String phone, HttpSession session);
 
     Result login(LoginFormDTO loginForm, HttpSession session);
+
+    /**
+     * 登出，删除会话并通知所有节点移除本地缓存
+     * @param token 登录token
+     */
+    Result logout(String token);
+
+    /**
+     * 当前用户今天签到
+     * @return 本次是否新签到，今天已经签到过时为false
+     */
+    Result sign();
+
+    /**
+     * 当前用户某个月的签到统计
+     * @param month 月份，格式yyyyMM，为空时为本月
+     * @return 签到天数、签到的日期、最长连续签到天数，本月还包含截止今天的连续签到天数
+     */
+    Result signStats(String month);
+
+    /**
+     * 把某个月所有用户的签到位图归档到每个用户的历史hash中，并删除位图
+     * @param month 月份，格式yyyyMM
+     * @return 归档的用户数
+     */
+    int rollupSign(String month);
 }
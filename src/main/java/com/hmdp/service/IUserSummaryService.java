@@ -0,0 +1,27 @@
+package com.hmdp.service;
+
+import com.hmdp.dto.UserDTO;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 批量查询用户的昵称和头像，用于博文、动态、评论等列表填充作者信息
+ */
+public interface IUserSummaryService {
+
+    /**
+     * 批量查询用户摘要，依次查询本地缓存、Redis，未命中的一次查询数据库
+     * @param userIds 用户id，可以重复
+     * @return 用户id -> 用户摘要，不存在的用户不包含在结果中
+     */
+    Map<Long, UserDTO> queryByIds(Collection<Long> userIds);
+
+    /**
+     * 用户修改昵称或头像后删除缓存
+     * @param userId 用户id
+     */
+    void evict(Long userId);
+}
@@ -1,6 +1,5 @@
 package com.hmdp.service;
 
-import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -14,7 +13,24 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IVoucherService extends IService<Voucher> {
 
-    Result queryVoucherOfShop(Long shopId);
+    /**
+     * 查询店铺的优惠券列表
+     * @param shopId 店铺id
+     * @return 渲染好的Result json
+     */
+    byte[] queryVoucherOfShop(Long shopId);
 
     void addSeckillVoucher(Voucher voucher);
+
+    /**
+     * 删除店铺的优惠券列表缓存，在事务中调用时等到提交后再删除
+     * @param shopId 店铺id
+     */
+    void evictVoucherOfShop(Long shopId);
+
+    /**
+     * 秒杀库存变化后删除店铺的优惠券列表缓存，每个店铺每CACHE_VOUCHER_STOCK_EVICT_SECONDS秒最多删除一次
+     * @param shopId 店铺id
+     */
+    void evictVoucherStockOfShop(Long shopId);
 }
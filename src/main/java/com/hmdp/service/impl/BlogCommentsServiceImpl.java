@@ -1,15 +1,41 @@
 package com.hmdp.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.dto.CursorResult;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.BlogComments;
 import com.hmdp.mapper.BlogCommentsMapper;
 import com.hmdp.service.IBlogCommentsService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IBlogService;
+import com.hmdp.service.IUserSummaryService;
+import com.hmdp.utils.KeysetPager;
+import com.hmdp.utils.CounterBatchLog;
+import com.hmdp.utils.RedisDeltaCounter;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import cn.hutool.core.util.StrUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+import static com.hmdp.utils.RedisConstants.*;
+
 /**
  * <p>
  *  服务实现类
  * </p>
+ * 一页评论固定两次查询：一级评论按游标分页，所有回复用一条UNION ALL查询；
+ * 作者信息批量查询，评论点赞与博文点赞相同，在Redis中去重并定时把点赞数写回数据库
  *
  * @author 虎哥
  * @since 2021-12-22
@@ -17,4 +43,185 @@ import org.springframework.stereotype.Service;
 @Service
 public class BlogCommentsServiceImpl extends ServiceImpl<BlogCommentsMapper, BlogComments> implements IBlogCommentsService {
 
+    private static final String SORT_BY_LIKED = "liked";
+    private static final DefaultRedisScript<Long> LIKE_SCRIPT;
+
+    static {
+        LIKE_SCRIPT = new DefaultRedisScript<>();
+        LIKE_SCRIPT.setLocation(new ClassPathResource("like.lua"));
+        LIKE_SCRIPT.setResultType(Long.class);
+    }
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private IBlogService blogService;
+    @Autowired
+    private IUserSummaryService userSummaryService;
+    @Autowired
+    private CounterBatchLog counterBatchLog;
+    private RedisDeltaCounter likedCounter;
+
+    @PostConstruct
+    public void init() {
+        likedCounter = new RedisDeltaCounter(stringRedisTemplate, COMMENT_LIKED_DELTA_KEY, counterBatchLog);
+    }
+
+    @Override
+    public Result saveComment(BlogComments comment) {
+        if (StrUtil.isBlank(comment.getContent()) || comment.getBlogId() == null) {
+            return Result.fail("评论内容不能为空");
+        }
+        //1.校验博文存在
+        if (blogService.query().eq("id", comment.getBlogId()).count() == 0) {
+            return Result.fail("博文不存在");
+        }
+        //2.回复时校验一级评论属于同一篇博文，被回复的评论属于同一个一级评论
+        long parentId = comment.getParentId() == null ? 0 : comment.getParentId();
+        long answerId = comment.getAnswerId() == null ? parentId : comment.getAnswerId();
+        if (parentId != 0) {
+            BlogComments parent = getById(parentId);
+            if (parent == null || !parent.getBlogId().equals(comment.getBlogId()) || parent.getParentId() != 0) {
+                return Result.fail("回复的评论不存在");
+            }
+            if (answerId != parentId) {
+                BlogComments answer = getById(answerId);
+                if (answer == null || answer.getParentId() != parentId) {
+                    return Result.fail("回复的评论不存在");
+                }
+            }
+        } else if (answerId != 0) {
+            return Result.fail("回复的评论不存在");
+        }
+        //3.保存评论
+        comment.setId(null)
+                .setUserId(UserHolder.getUser().getId())
+                .setParentId(parentId)
+                .setAnswerId(answerId)
+                .setLiked(0)
+                .setStatus(false);
+        save(comment);
+        //4.博文评论数只在Redis中累加，定时写回
+        blogService.onCommented(comment.getBlogId());
+        return Result.ok(comment.getId());
+    }
+
+    @Override
+    public Result queryComments(Long blogId, String sortBy, String cursor) {
+        //1.游标分页查询一级评论
+        QueryWrapper<BlogComments> wrapper = new QueryWrapper<BlogComments>()
+                .eq("blog_id", blogId).eq("parent_id", 0).eq("status", 0);
+        CursorResult<BlogComments> page = SORT_BY_LIKED.equals(sortBy)
+                ? KeysetPager.page(getBaseMapper(), wrapper, "liked", BlogComments::getLiked, BlogComments::getId,
+                        cursor, SystemConstants.MAX_PAGE_SIZE, true)
+                : KeysetPager.page(getBaseMapper(), wrapper, "id", BlogComments::getId, BlogComments::getId,
+                        cursor, SystemConstants.MAX_PAGE_SIZE, true);
+        if (page == null) {
+            return Result.fail("游标错误");
+        }
+        List<BlogComments> comments = page.getList();
+        if (comments.isEmpty()) {
+            return Result.ok(page);
+        }
+        //2.一次查询所有一级评论的前几条回复
+        List<Long> parentIds = new ArrayList<>(comments.size());
+        comments.forEach(comment -> parentIds.add(comment.getId()));
+        Map<Long, List<BlogComments>> replies = new HashMap<>(comments.size() * 2);
+        List<BlogComments> all = new ArrayList<>(comments);
+        for (BlogComments reply : getBaseMapper().queryReplies(parentIds, SystemConstants.REPLY_PREVIEW_SIZE)) {
+            replies.computeIfAbsent(reply.getParentId(), k -> new ArrayList<>()).add(reply);
+            all.add(reply);
+        }
+        comments.forEach(comment -> comment.setReplies(replies.getOrDefault(comment.getId(), Collections.emptyList())));
+        //3.批量填充作者、点赞数和是否点赞过
+        fillUser(all);
+        fillLiked(all);
+        return Result.ok(page);
+    }
+
+    @Override
+    public Result queryReplies(Long parentId, String cursor) {
+        //1.按 (parent_id, id) 索引游标分页
+        QueryWrapper<BlogComments> wrapper = new QueryWrapper<BlogComments>()
+                .eq("parent_id", parentId).eq("status", 0);
+        CursorResult<BlogComments> page = KeysetPager.page(getBaseMapper(), wrapper, "id", BlogComments::getId,
+                BlogComments::getId, cursor, SystemConstants.MAX_PAGE_SIZE, false);
+        if (page == null) {
+            return Result.fail("游标错误");
+        }
+        //2.批量填充作者、点赞数和是否点赞过
+        if (!page.getList().isEmpty()) {
+            fillUser(page.getList());
+            fillLiked(page.getList());
+        }
+        return Result.ok(page);
+    }
+
+    @Override
+    public Result likeComment(Long id) {
+        if (query().eq("id", id).eq("status", 0).count() == 0) {
+            return Result.fail("评论不存在");
+        }
+        Long userId = UserHolder.getUser().getId();
+        Long liked = stringRedisTemplate.execute(
+                LIKE_SCRIPT,
+                Arrays.asList(COMMENT_LIKED_KEY + id, COMMENT_LIKED_DELTA_KEY),
+                userId.toString(), String.valueOf(System.currentTimeMillis()), id.toString()
+        );
+        return Result.ok(liked != null && liked == 1);
+    }
+
+    /**
+     * 把评论点赞数的增量批量写回数据库
+     */
+    @Scheduled(fixedDelayString = "${hmdp.blog.liked-flush-millis:5000}")
+    public void flushLiked() {
+        try {
+            likedCounter.flush(getBaseMapper()::incrLikedBatch);
+        } catch (Exception e) {
+            log.error("评论点赞数写回数据库失败", e);
+        }
+    }
+
+    private void fillUser(List<BlogComments> comments) {
+        List<Long> userIds = new ArrayList<>(comments.size());
+        comments.forEach(comment -> userIds.add(comment.getUserId()));
+        Map<Long, UserDTO> users = userSummaryService.queryByIds(userIds);
+        for (BlogComments comment : comments) {
+            UserDTO user = users.get(comment.getUserId());
+            if (user != null) {
+                comment.setName(user.getNickName());
+                comment.setIcon(user.getIcon());
+            }
+        }
+    }
+
+    /**
+     * 一次往返取出点赞数增量和当前用户的点赞状态
+     */
+    private void fillLiked(List<BlogComments> comments) {
+        UserDTO user = UserHolder.getUser();
+        String[] fields = new String[comments.size()];
+        for (int i = 0; i < comments.size(); i++) {
+            fields[i] = comments.get(i).getId().toString();
+        }
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            RedisDeltaCounter.pipelineDeltas(conn, likedCounter.getDeltaKey(), fields);
+            if (user != null) {
+                for (BlogComments comment : comments) {
+                    conn.zScore(COMMENT_LIKED_KEY + comment.getId(), user.getId().toString());
+                }
+            }
+            return null;
+        });
+        for (int i = 0; i < comments.size(); i++) {
+            BlogComments comment = comments.get(i);
+            int delta = RedisDeltaCounter.sumDeltas(results, 0, i);
+            if (delta != 0 && comment.getLiked() != null) {
+                comment.setLiked(Math.max(0, comment.getLiked() + delta));
+            }
+            comment.setIsLike(user != null && results.get(i + 2) != null);
+        }
+    }
 }
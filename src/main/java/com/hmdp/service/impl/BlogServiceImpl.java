@@ -1,10 +1,39 @@
 package com.hmdp.service.impl;
 
+import com.hmdp.dto.CursorResult;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.ScrollResult;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
 import com.hmdp.mapper.BlogMapper;
 import com.hmdp.service.IBlogService;
+import com.hmdp.service.IFollowService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.utils.BlogFeed;
+import com.hmdp.utils.BlogHotRanking;
+import com.hmdp.utils.BlogSearchIndex;
+import com.hmdp.utils.CounterAggregator;
+import com.hmdp.utils.CounterBatchLog;
+import com.hmdp.utils.RedisDeltaCounter;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+
+import java.util.*;
+
+import static com.hmdp.utils.RedisConstants.*;
 
 /**
  * <p>
@@ -17,4 +46,197 @@ import org.springframework.stereotype.Service;
 @Service
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IBlogService {
 
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    private RedisDeltaCounter likedCounter;
+    private RedisDeltaCounter commentsCounter;
+    @Autowired
+    private CounterAggregator counterAggregator;
+    @Autowired
+    private BlogHotRanking blogHotRanking;
+    @Autowired
+    private BlogFeed blogFeed;
+    @Autowired
+    private BlogSearchIndex blogSearchIndex;
+    @Autowired
+    private IFollowService followService;
+    @Autowired
+    private CounterBatchLog counterBatchLog;
+    private static final DefaultRedisScript<Long> LIKE_SCRIPT;
+
+    static {
+        LIKE_SCRIPT = new DefaultRedisScript<>();
+        LIKE_SCRIPT.setLocation(new ClassPathResource("like.lua"));
+        LIKE_SCRIPT.setResultType(Long.class);
+    }
+
+    @PostConstruct
+    public void init() {
+        likedCounter = new RedisDeltaCounter(stringRedisTemplate, BLOG_LIKED_DELTA_KEY, counterBatchLog);
+        commentsCounter = new RedisDeltaCounter(stringRedisTemplate, BLOG_COMMENTS_DELTA_KEY, counterBatchLog,
+                counterAggregator);
+    }
+
+    @Override
+    public Result likeBlog(Long id) {
+        Long userId = UserHolder.getUser().getId();
+        // 一次脚本调用完成判断、点赞/取消点赞和记录增量，数据库由flushLiked定时批量更新
+        Long liked = stringRedisTemplate.execute(
+                LIKE_SCRIPT,
+                Arrays.asList(BLOG_LIKED_KEY + id, BLOG_LIKED_DELTA_KEY),
+                userId.toString(), String.valueOf(System.currentTimeMillis()), id.toString()
+        );
+        blogHotRanking.markDirty(id);
+        return Result.ok(liked != null && liked == 1);
+    }
+
+    @Override
+    public Result saveBlog(Blog blog) {
+        // 获取登录用户
+        blog.setUserId(UserHolder.getUser().getId());
+        // 保存探店博文
+        save(blog);
+        blogHotRanking.onPublished(blog);
+        blogSearchIndex.index(blog);
+        // 推送到粉丝的关注动态
+        blogFeed.publish(blog);
+        // 返回id
+        return Result.ok(blog.getId());
+    }
+
+    @Override
+    public List<Blog> queryHotBlog(Integer current) {
+        if (!blogHotRanking.isReady()) {
+            return query().orderByDesc("liked")
+                    .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE)).getRecords();
+        }
+        List<Long> ids = blogHotRanking.page(current, SystemConstants.MAX_PAGE_SIZE);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return listByIdsInOrder(ids);
+    }
+
+    @Override
+    public CursorResult<Blog> queryHotBlog(String cursor) {
+        CursorResult<Long> page = blogHotRanking.page(cursor, SystemConstants.MAX_PAGE_SIZE);
+        if (page == null) {
+            return null;
+        }
+        return new CursorResult<>(listByIdsInOrder(page.getList()), page.getCursor());
+    }
+
+    @Override
+    public List<Blog> searchBlog(String keyword, Integer current) {
+        if (!blogSearchIndex.isReady()) {
+            // 索引未加载完成时只按标题模糊查询
+            return query().like("title", keyword).orderByDesc("liked")
+                    .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE)).getRecords();
+        }
+        List<Long> ids = blogSearchIndex.search(keyword, current, SystemConstants.MAX_PAGE_SIZE);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return listByIdsInOrder(ids);
+    }
+
+    @Override
+    public ScrollResult queryBlogOfFollow(Long max, Integer offset) {
+        Long userId = UserHolder.getUser().getId();
+        //1.查询关注的用户，用于拉取大V的发件箱
+        long[] followees = followService.queryFolloweeIds(userId);
+        //2.合并收件箱和大V发件箱
+        BlogFeed.Page page = blogFeed.read(userId, followees, max, offset, SystemConstants.MAX_PAGE_SIZE);
+        //3.一次查询当前页的博文
+        ScrollResult result = new ScrollResult();
+        result.setList(listByIdsInOrder(page.ids));
+        result.setMinTime(page.minTime);
+        result.setOffset(page.offset);
+        return result;
+    }
+
+    @Override
+    public void onCommented(Long blogId) {
+        commentsCounter.incr(blogId, 1);
+        blogHotRanking.markDirty(blogId);
+    }
+
+    private static Integer applyDelta(Integer value, int delta) {
+        if (value == null || delta == 0) {
+            return value;
+        }
+        return Math.max(0, value + delta);
+    }
+
+    /**
+     * 一次查询多篇博文，按ids的顺序返回
+     */
+    private List<Blog> listByIdsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Blog> blogs = new HashMap<>(ids.size() * 2);
+        listByIds(ids).forEach(blog -> blogs.put(blog.getId(), blog));
+        List<Blog> sorted = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Blog blog = blogs.get(id);
+            if (blog != null) {
+                sorted.add(blog);
+            }
+        }
+        return sorted;
+    }
+
+    @Override
+    public void fillLiked(List<Blog> blogs) {
+        if (blogs.isEmpty()) {
+            return;
+        }
+        UserDTO user = UserHolder.getUser();
+        String[] fields = new String[blogs.size()];
+        for (int i = 0; i < blogs.size(); i++) {
+            fields[i] = blogs.get(i).getId().toString();
+        }
+        // 一次往返：先取出所有未写回（包括正在写回）的点赞数、评论数增量，再查询当前用户是否点赞过每篇博文
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            RedisDeltaCounter.pipelineDeltas(conn, BLOG_LIKED_DELTA_KEY, fields);
+            RedisDeltaCounter.pipelineDeltas(conn, BLOG_COMMENTS_DELTA_KEY, fields);
+            if (user != null) {
+                for (Blog blog : blogs) {
+                    conn.zScore(BLOG_LIKED_KEY + blog.getId(), user.getId().toString());
+                }
+            }
+            return null;
+        });
+        for (int i = 0; i < blogs.size(); i++) {
+            Blog blog = blogs.get(i);
+            blog.setLiked(applyDelta(blog.getLiked(), RedisDeltaCounter.sumDeltas(results, 0, i)));
+            blog.setComments(applyDelta(blog.getComments(), RedisDeltaCounter.sumDeltas(results, 2, i)));
+            blog.setIsLike(user != null && results.get(i + 4) != null);
+        }
+    }
+
+    /**
+     * 把点赞数、评论数的增量批量写回数据库
+     */
+    @Scheduled(fixedDelayString = "${hmdp.blog.liked-flush-millis:5000}")
+    public void flushCounters() {
+        try {
+            likedCounter.flush(deltas -> {
+                getBaseMapper().incrLikedBatch(deltas);
+                // 事务提交后再更新检索索引，回滚时不更新；其他节点由BlogSearchIndex.refreshLiked定时修正
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        blogSearchIndex.addLiked(deltas);
+                    }
+                });
+            });
+            commentsCounter.flush(getBaseMapper()::incrCommentsBatch);
+        } catch (Exception e) {
+            // 数据库写入失败时批次留在flushing中，下次再处理
+            log.error("博文计数写回数据库失败", e);
+        }
+    }
 }
@@ -1,15 +1,35 @@
 package com.hmdp.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Follow;
 import com.hmdp.mapper.FollowMapper;
 import com.hmdp.service.IFollowService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IUserSummaryService;
+import com.hmdp.utils.NearCache;
+import com.hmdp.utils.UserHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
 /**
  * <p>
  *  服务实现类
  * </p>
+ * 关注列表依次查询本地缓存（排好序的long数组）、Redis set follows:{userId}、数据库；
+ * 关注关系变化时删除缓存，下次读取重新加载；关注数、粉丝数缓存在hash follow:count:{userId}中，变化时累加，
+ * 未缓存时从数据库统计，统计期间发生变化的结果不写入缓存
  *
  * @author 虎哥
  * @since 2021-12-22
@@ -17,4 +37,162 @@ import org.springframework.stereotype.Service;
 @Service
 public class FollowServiceImpl extends ServiceImpl<FollowMapper, Follow> implements IFollowService {
 
+    /**
+     * 关注列表为空时Redis中无法保存空set，放入一个占位成员
+     */
+    private static final String EMPTY_MEMBER = "";
+    private static final String FIELD_FOLLOWEES = "followees";
+    private static final String FIELD_FOLLOWERS = "followers";
+    private static final DefaultRedisScript<Long> INCR_SCRIPT;
+    private static final DefaultRedisScript<Long> FILL_SCRIPT;
+
+    static {
+        INCR_SCRIPT = new DefaultRedisScript<>();
+        INCR_SCRIPT.setLocation(new ClassPathResource("incr_if_exists.lua"));
+        INCR_SCRIPT.setResultType(Long.class);
+        FILL_SCRIPT = new DefaultRedisScript<>();
+        FILL_SCRIPT.setLocation(new ClassPathResource("count_fill.lua"));
+        FILL_SCRIPT.setResultType(Long.class);
+    }
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private IUserSummaryService userSummaryService;
+    /**
+     * 热点用户的关注列表，其它节点的关注变化最多延迟FOLLOW_LOCAL_TTL秒可见
+     */
+    private final NearCache<Long, long[]> followees = new NearCache<>(FOLLOW_LOCAL_TTL, TimeUnit.SECONDS, 10000);
+
+    @Override
+    public Result follow(Long followUserId, Boolean isFollow) {
+        Long userId = UserHolder.getUser().getId();
+        if (userId.equals(followUserId)) {
+            return Result.fail("不能关注自己");
+        }
+        boolean changed;
+        if (Boolean.TRUE.equals(isFollow)) {
+            //1.关注，由唯一索引保证并发重复关注时只插入一行
+            changed = getBaseMapper().insertIgnore(userId, followUserId) > 0;
+        } else {
+            //2.取消关注
+            changed = remove(new QueryWrapper<Follow>().eq("user_id", userId).eq("follow_user_id", followUserId));
+        }
+        if (changed) {
+            //3.删除关注列表缓存，累加关注数和粉丝数
+            followees.remove(userId);
+            stringRedisTemplate.delete(FOLLOW_KEY + userId);
+            String delta = Boolean.TRUE.equals(isFollow) ? "1" : "-1";
+            stringRedisTemplate.execute(INCR_SCRIPT, countKeys(userId), FIELD_FOLLOWEES, delta);
+            stringRedisTemplate.execute(INCR_SCRIPT, countKeys(followUserId), FIELD_FOLLOWERS, delta);
+        }
+        return Result.ok();
+    }
+
+    @Override
+    public Result isFollow(Long followUserId) {
+        Long userId = UserHolder.getUser().getId();
+        return Result.ok(Arrays.binarySearch(queryFolloweeIds(userId), followUserId) >= 0);
+    }
+
+    @Override
+    public Result followCommons(Long id) {
+        Long userId = UserHolder.getUser().getId();
+        //1.两个有序数组求交集
+        long[] mine = queryFolloweeIds(userId);
+        long[] others = queryFolloweeIds(id);
+        List<Long> commons = new ArrayList<>();
+        for (int i = 0, j = 0; i < mine.length && j < others.length; ) {
+            if (mine[i] == others[j]) {
+                commons.add(mine[i]);
+                i++;
+                j++;
+            } else if (mine[i] < others[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        if (commons.isEmpty()) {
+            return Result.ok(Collections.emptyList());
+        }
+        //2.批量查询用户
+        Map<Long, UserDTO> users = userSummaryService.queryByIds(commons);
+        List<UserDTO> result = new ArrayList<>(commons.size());
+        for (Long common : commons) {
+            UserDTO user = users.get(common);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return Result.ok(result);
+    }
+
+    @Override
+    public Result queryFollowCount(Long userId) {
+        Map<String, Long> counts = counts(userId);
+        return Result.ok(counts);
+    }
+
+    @Override
+    public long[] queryFolloweeIds(Long userId) {
+        return followees.get(userId, this::loadFolloweeIds);
+    }
+
+    @Override
+    public long countFollowers(Long userId) {
+        return counts(userId).get(FIELD_FOLLOWERS);
+    }
+
+    /**
+     * 先查Redis，未命中时查询数据库并写入Redis
+     */
+    private long[] loadFolloweeIds(Long userId) {
+        String key = FOLLOW_KEY + userId;
+        Set<String> members = stringRedisTemplate.opsForSet().members(key);
+        if (members == null || members.isEmpty()) {
+            members = new HashSet<>();
+            for (Follow follow : query().select("follow_user_id").eq("user_id", userId).list()) {
+                members.add(follow.getFollowUserId().toString());
+            }
+            String[] values = members.toArray(new String[0]);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.sAdd(key, EMPTY_MEMBER);
+                if (values.length > 0) {
+                    conn.sAdd(key, values);
+                }
+                conn.expire(key, TimeUnit.MINUTES.toSeconds(FOLLOW_TTL));
+                return null;
+            });
+        }
+        long[] ids = members.stream().filter(m -> !EMPTY_MEMBER.equals(m)).mapToLong(Long::parseLong).toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private Map<String, Long> counts(Long userId) {
+        String key = FOLLOW_COUNT_KEY + userId;
+        Map<Object, Object> hash = stringRedisTemplate.opsForHash().entries(key);
+        Map<String, Long> counts = new LinkedHashMap<>(4);
+        if (hash.size() == 2) {
+            counts.put(FIELD_FOLLOWEES, Long.valueOf(hash.get(FIELD_FOLLOWEES).toString()));
+            counts.put(FIELD_FOLLOWERS, Long.valueOf(hash.get(FIELD_FOLLOWERS).toString()));
+            return counts;
+        }
+        //统计前放置占位，统计期间关注数变化时follow()会删除占位，这次的结果就不写入缓存
+        String token = UUID.randomUUID().toString();
+        List<String> keys = countKeys(userId);
+        stringRedisTemplate.opsForValue().set(keys.get(1), token, FOLLOW_COUNT_FILL_TTL, TimeUnit.SECONDS);
+        counts.put(FIELD_FOLLOWEES, (long) query().eq("user_id", userId).count());
+        counts.put(FIELD_FOLLOWERS, (long) query().eq("follow_user_id", userId).count());
+        stringRedisTemplate.execute(FILL_SCRIPT, keys, token, String.valueOf(TimeUnit.HOURS.toSeconds(FOLLOW_COUNT_TTL)),
+                FIELD_FOLLOWEES, counts.get(FIELD_FOLLOWEES).toString(),
+                FIELD_FOLLOWERS, counts.get(FIELD_FOLLOWERS).toString());
+        return counts;
+    }
+
+    private static List<String> countKeys(Long userId) {
+        return Arrays.asList(FOLLOW_COUNT_KEY + userId, FOLLOW_COUNT_FILL_KEY + userId);
+    }
 }
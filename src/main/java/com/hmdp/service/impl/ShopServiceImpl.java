@@ -1,23 +1,50 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.NumberUtil;
 import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.core.util.URLUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.dto.FacetResult;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.ShopFilter;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.utils.CacheClient;
-import com.hmdp.utils.RedisData;
+import com.hmdp.utils.CounterAggregator;
+import com.hmdp.utils.CounterBatchLog;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.hmdp.utils.RedisDeltaCounter;
+import com.hmdp.utils.ShopChangedEvent;
+import com.hmdp.utils.ShopFacetIndex;
+import com.hmdp.utils.ShopLeaderboard;
+import com.hmdp.utils.ShopGeoIndex;
+import com.hmdp.utils.ShopNameIndex;
+import com.hmdp.utils.ShopOpenHoursIndex;
+import com.hmdp.utils.ShopTypeListing;
+import com.hmdp.utils.SystemConstants;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.geo.*;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.time.LocalDateTime;
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 import static com.hmdp.utils.RedisConstants.*;
 
@@ -35,15 +62,30 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     private StringRedisTemplate stringRedisTemplate;
     @Autowired
     private CacheClient cacheClient;
+    @Autowired
+    private ShopGeoIndex shopGeoIndex;
+    @Autowired
+    private ShopNameIndex shopNameIndex;
+    @Autowired
+    private ShopTypeListing shopTypeListing;
+    @Autowired
+    private ShopFacetIndex shopFacetIndex;
+    @Autowired
+    private ShopOpenHoursIndex shopOpenHoursIndex;
+    @Autowired
+    private ShopLeaderboard shopLeaderboard;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private CounterAggregator counterAggregator;
+    @Autowired
+    private CounterBatchLog counterBatchLog;
+    private RedisDeltaCounter soldCounter;
 
-    private static ExecutorService threadPool = new ThreadPoolExecutor(
-            2,
-            5,
-            3,
-            TimeUnit.SECONDS,
-            new LinkedBlockingDeque<>(3),
-            Executors.defaultThreadFactory(),
-            new ThreadPoolExecutor.DiscardOldestPolicy());
+    @PostConstruct
+    public void init() {
+        soldCounter = new RedisDeltaCounter(stringRedisTemplate, SHOP_SOLD_DELTA_KEY, counterBatchLog, counterAggregator);
+    }
 
 
     @Override
@@ -60,161 +102,289 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         return Result.ok(shop);
     }
 
-    /**
-     * @Param id: 
-     * @return: com.hmdp.dto.Result
-     * description: 缓存null值解决商品查询的缓存穿透问题
-     */
-    public Shop queryWithPassThrough(Long id) {
-        String key=CACHE_SHOP_KEY+id;
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-        //从redis查询缓存命中
-        if (shopJson!=null){
-            if (StrUtil.isNotBlank(shopJson)) {
-                Shop shop = JSONUtil.toBean(shopJson, Shop.class);
-                return shop;
-            }
-            return null;
+    @Override
+    public Result saveShop(Shop shop) {
+        // 写入数据库
+        save(shop);
+        Shop saved = getById(shop.getId());
+        // 写入店铺类型对应的GEO集合
+        addShopGeo(saved);
+        // 通知内存索引
+        eventPublisher.publishEvent(new ShopChangedEvent(this, null, saved));
+        return Result.ok(shop.getId());
+    }
+
+    @Override
+    public Result update(Shop shop) {
+        Long id = shop.getId();
+        if (id==null){
+            return Result.fail("店铺id不能为空");
         }
-        Shop shop = getById(id);
-        if (shop==null){
-            stringRedisTemplate.opsForValue().set(key,"",CACHE_NULL_TTL, TimeUnit.MINUTES);
-            return null;
+        Shop old = getById(id);
+        if (old==null){
+            return Result.fail("店铺不存在");
         }
-        stringRedisTemplate.opsForValue().set(key,JSONUtil.toJsonStr(shop),CACHE_SHOP_TTL, TimeUnit.MINUTES);
-        return shop;
+        //1.更新数据库
+        updateById(shop);
+        //2.删除缓存
+        cacheClient.delete(cacheClient.namespacedKey(CACHE_SHOP_KEY,id));
+        //3.同步GEO集合
+        Shop updated = getById(id);
+        if (old.getTypeId() != null && !old.getTypeId().equals(updated.getTypeId())) {
+            stringRedisTemplate.opsForGeo().remove(SHOP_GEO_KEY + old.getTypeId(), id.toString());
+        }
+        addShopGeo(updated);
+        //4.通知内存索引
+        eventPublisher.publishEvent(new ShopChangedEvent(this, old, updated));
+        return Result.ok();
     }
 
-    /**
-     * @Param id:
-     * @return: com.hmdp.entity.Shop
-     * description: 利用互斥锁解决缓存击穿问题
-     */
-    public Shop queryWithMutex(Long id)  {
-        String key = CACHE_SHOP_KEY + id;
-        // 1、从redis中查询商铺缓存
-        String shopJson = stringRedisTemplate.opsForValue().get("key");
-        // 2、判断是否存在
-        if (StrUtil.isNotBlank(shopJson)) {
-            // 存在,直接返回
-            return JSONUtil.toBean(shopJson, Shop.class);
-        }
-        //判断命中的值是否是空值
-        if (shopJson != null) {
-            //返回一个错误信息
-            return null;
-        }
-        // 4.实现缓存重构
-        //4.1 获取互斥锁
-        String lockKey = "lock:shop:" + id;
-        Shop shop = null;
-        try {
-            boolean isLock = tryLock(lockKey);
-            // 4.2 判断否获取成功
-            if(!isLock){
-                //4.3 失败，则休眠重试
-                Thread.sleep(50);
-                return queryWithMutex(id);
+    @Override
+    public Result queryShopByType(Integer typeId, Integer current, Double x, Double y, String sortBy) {
+        if (current == null || current < 1) {
+            return Result.fail("页码错误");
+        }
+        //1.不需要按距离排序，从Redis的类型列表中查询，列表未构建时查询数据库
+        if (x == null || y == null) {
+            if (shopTypeListing.isReady()) {
+                List<Long> ids = shopTypeListing.page(typeId.longValue(), ShopTypeListing.Sort.of(sortBy),
+                        current, SystemConstants.DEFAULT_PAGE_SIZE);
+                return Result.ok(queryShopsByIds(ids));
             }
-            //4.4 成功，根据id查询数据库
-            shop = getById(id);
-            // 5.不存在，返回错误
-            if(shop == null){
-                //将空值写入redis
-                stringRedisTemplate.opsForValue().set(key,"",CACHE_NULL_TTL,TimeUnit.MINUTES);
-                //返回错误信息
-                return null;
+            Page<Shop> page = query()
+                    .eq("type_id", typeId)
+                    .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE));
+            return Result.ok(page.getRecords());
+        }
+        if (!ShopGeoIndex.isValid(x, y)) {
+            return Result.fail("坐标超出范围");
+        }
+        //2.计算分页参数，按距离查询只支持limit，因此查出前end条后在内存中跳过前from条，只允许查询前MAX_SEARCH_PAGE页
+        if (current > SystemConstants.MAX_SEARCH_PAGE) {
+            return Result.ok(Collections.emptyList());
+        }
+        int from = (current - 1) * SystemConstants.DEFAULT_PAGE_SIZE;
+        int end = current * SystemConstants.DEFAULT_PAGE_SIZE;
+        //3.内存索引可用时直接在本地查询
+        if (shopGeoIndex.isReady()) {
+            List<ShopGeoIndex.Neighbor> neighbors = shopGeoIndex.radius(x, y, SHOP_GEO_RADIUS_METERS, typeId.longValue(), end);
+            if (neighbors.size() <= from) {
+                return Result.ok(Collections.emptyList());
+            }
+            List<Long> ids = new ArrayList<>(neighbors.size() - from);
+            Map<Long, Double> distanceMap = new HashMap<>(neighbors.size() - from);
+            for (ShopGeoIndex.Neighbor neighbor : neighbors.subList(from, neighbors.size())) {
+                ids.add(neighbor.getShopId());
+                distanceMap.put(neighbor.getShopId(), neighbor.getDistance());
             }
-            //6.写入redis
-            stringRedisTemplate.opsForValue().set(key,JSONUtil.toJsonStr(shop),CACHE_NULL_TTL,TimeUnit.MINUTES);
+            return Result.ok(fillDistance(queryShopsByIds(ids), distanceMap));
+        }
+        //4.按距离升序查询半径内的店铺 GEORADIUS key x y 5000 m WITHDIST ASC COUNT end
+        GeoResults<RedisGeoCommands.GeoLocation<String>> results = stringRedisTemplate.opsForGeo().radius(
+                SHOP_GEO_KEY + typeId,
+                new Circle(new Point(x, y), new Distance(SHOP_GEO_RADIUS_METERS)),
+                RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs().includeDistance().sortAscending().limit(end));
+        if (results == null || results.getContent().size() <= from) {
+            return Result.ok(Collections.emptyList());
+        }
+        //5.截取当前页，记录店铺id和距离
+        List<GeoResult<RedisGeoCommands.GeoLocation<String>>> content = results.getContent().subList(from, results.getContent().size());
+        List<Long> ids = new ArrayList<>(content.size());
+        Map<Long, Double> distanceMap = new HashMap<>(content.size());
+        for (GeoResult<RedisGeoCommands.GeoLocation<String>> result : content) {
+            Long shopId = Long.valueOf(result.getContent().getName());
+            ids.add(shopId);
+            distanceMap.put(shopId, result.getDistance().getValue());
+        }
+        //6.批量查询所有店铺，并按距离顺序返回
+        return Result.ok(fillDistance(queryShopsByIds(ids), distanceMap));
+    }
 
-        }catch (Exception e){
-            throw new RuntimeException(e);
+    @Override
+    public Result queryShopByName(String name, Integer current) {
+        if (current == null || current < 1) {
+            return Result.fail("页码错误");
+        }
+        //1.索引未就绪或者没有关键字时查询数据库
+        if (StrUtil.isBlank(name) || !shopNameIndex.isReady()) {
+            Page<Shop> page = query()
+                    .like(StrUtil.isNotBlank(name), "name", name)
+                    .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
+            return Result.ok(page.getRecords());
         }
-        finally {
-            //7.释放互斥锁
-            unLock(lockKey);
+        //2.在名称索引中查询当前页的店铺id，只允许查询前MAX_SEARCH_PAGE页
+        if (current > SystemConstants.MAX_SEARCH_PAGE) {
+            return Result.ok(Collections.emptyList());
         }
-        return shop;
+        List<Long> ids = shopNameIndex.search(name, current, SystemConstants.MAX_PAGE_SIZE);
+        if (ids.isEmpty()) {
+            return Result.ok(Collections.emptyList());
+        }
+        //3.只查询当前页的店铺
+        return Result.ok(queryShopsByIds(ids));
     }
 
-    /**
-     * @Param id:
-     * @return: com.hmdp.entity.Shop
-     * description: 利用逻辑过期解决缓存击穿问题
-     *              当用户开始查询redis时，判断是否命中，如果没有命中则直接返回空数据，理论来讲缓存不会出现未命中的情况，因为加的是逻辑过期时间，其实不会过期
-     *              一般这种活动都会预热，提前加入缓存
-     */
-    public Shop queryWithLogicalExpire( Long id ){
-
-        String key=CACHE_SHOP_KEY+id;
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isBlank(shopJson)){
-            return null;
-        }
-        RedisData redisData = JSONUtil.toBean(shopJson,RedisData.class);
-        Shop shop=JSONUtil.toBean((JSONObject) redisData.getData(),Shop.class);
-        if (redisData.getExpireTime().isAfter(LocalDateTime.now())){
-            return shop;
-        }
-        String lockKey=LOCK_SHOP_KEY+id;
-        boolean isLock = tryLock(lockKey);
-        if (isLock){
-            threadPool.submit(()->{
-                try {
-                    saveShopToRedis(id,20L);
-                }catch (Exception e){
-                    throw new RuntimeException(e);
-                }finally {
-                    unLock(lockKey);
-                }
-            });
+    @Override
+    public Result suggestShopName(String prefix) {
+        if (!shopNameIndex.isReady()) {
+            return Result.ok(Collections.emptyList());
         }
-        return shop;
+        return Result.ok(shopNameIndex.suggest(prefix, SystemConstants.MAX_PAGE_SIZE));
     }
 
+    @Override
+    public Result filterShops(ShopFilter filter, Integer current) {
+        if (current == null || current < 1 || current > SystemConstants.MAX_SEARCH_PAGE) {
+            return Result.fail("页码错误");
+        }
+        if (filter.getPriceBand() != null
+                && (filter.getPriceBand() < 0 || filter.getPriceBand() >= ShopFacetIndex.PRICE_BANDS.length)) {
+            return Result.fail("价格区间错误");
+        }
+        //1.数据库中没有营业时间段，正在营业的条件只能使用内存索引
+        if (Boolean.TRUE.equals(filter.getOpenNow()) && (!shopFacetIndex.isReady() || !shopOpenHoursIndex.isReady())) {
+            return Result.fail("营业时间索引加载中，请稍后再试");
+        }
+        //2.索引未就绪时查询数据库，不返回各条件的数量
+        if (!shopFacetIndex.isReady()) {
+            QueryWrapper<Shop> wrapper = new QueryWrapper<Shop>()
+                    .eq(filter.getTypeId() != null, "type_id", filter.getTypeId())
+                    .eq(StrUtil.isNotBlank(filter.getArea()), "area", filter.getArea())
+                    .ge(filter.getMinScore() != null, "score", filter.getMinScore())
+                    .and(filter.getPriceBand() != null, w -> priceBand(w, filter.getPriceBand()));
+            // ShopMapper的分页不执行COUNT（PageCountPolicy.SKIP），总数单独统计
+            int total = count(wrapper);
+            List<Shop> records = page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE, false),
+                    wrapper.orderByDesc("score")).getRecords();
+            return Result.ok(new FacetResult<>(records, total, Collections.emptyMap()));
+        }
+        //3.位图索引求交集，得到当前页的店铺id和各条件的数量
+        FacetResult<Long> hits = shopFacetIndex.filter(filter, current, SystemConstants.DEFAULT_PAGE_SIZE);
+        //4.只查询当前页的店铺
+        return Result.ok(new FacetResult<>(queryShopsByIds(hits.getList()), hits.getTotal(), hits.getFacets()));
+    }
 
+    @Override
+    public Result queryShopRank(String board, Long typeId, Integer limit) {
+        List<Long> ids = shopLeaderboard.top(ShopLeaderboard.Board.of(board), typeId, limit);
+        return Result.ok(queryShopsByIds(ids));
+    }
 
+    private void priceBand(QueryWrapper<Shop> wrapper, int band) {
+        long[] bands = ShopFacetIndex.PRICE_BANDS;
+        wrapper.ge("avg_price", bands[band]);
+        if (band + 1 < bands.length) {
+            wrapper.lt("avg_price", bands[band + 1]);
+        }
+    }
 
     @Override
-    public Result update(Shop shop) {
-        Long id = shop.getId();
-        if (id==null){
-            return Result.fail("店铺id不能为空");
+    public int loadShopGeo() {
+        //1.查询所有店铺的坐标，按类型分组，没有类型或坐标的店铺不参与按距离查询
+        List<Shop> shops = query().select("id", "type_id", "x", "y").list();
+        Map<Long, List<Shop>> shopsByType = shops.stream()
+                .filter(shop -> shop.getTypeId() != null && shop.getX() != null && shop.getY() != null)
+                .collect(Collectors.groupingBy(Shop::getTypeId));
+        //2.每个类型写入临时key后重命名，重建过程中不影响查询
+        shopsByType.forEach((typeId, typeShops) -> {
+            String key = SHOP_GEO_KEY + typeId;
+            String tmpKey = key + ":loading";
+            stringRedisTemplate.delete(tmpKey);
+            List<RedisGeoCommands.GeoLocation<String>> locations = new ArrayList<>(typeShops.size());
+            for (Shop shop : typeShops) {
+                locations.add(new RedisGeoCommands.GeoLocation<>(shop.getId().toString(), new Point(shop.getX(), shop.getY())));
+            }
+            for (List<RedisGeoCommands.GeoLocation<String>> batch : CollUtil.split(locations, SHOP_GEO_LOAD_BATCH)) {
+                stringRedisTemplate.opsForGeo().add(tmpKey, batch);
+            }
+            stringRedisTemplate.rename(tmpKey, key);
+        });
+        //3.删除已经没有店铺的类型的key
+        deleteStaleShopGeo(shopsByType.keySet());
+        return shops.size();
+    }
+
+    private void deleteStaleShopGeo(Set<Long> typeIds) {
+        ScanOptions options = ScanOptions.scanOptions().match(SHOP_GEO_KEY + "*").count(SWEEP_BATCH_SIZE).build();
+        List<String> stale = new ArrayList<>();
+        try (Cursor<byte[]> cursor = stringRedisTemplate.executeWithStickyConnection(connection -> connection.scan(options))) {
+            while (cursor.hasNext()) {
+                String key = new String(cursor.next(), StandardCharsets.UTF_8);
+                String typeId = key.substring(SHOP_GEO_KEY.length());
+                // 只处理 shop:geo:{typeId}，其它节点正在写入的临时key不删除
+                if (NumberUtil.isLong(typeId) && !typeIds.contains(Long.valueOf(typeId))) {
+                    stale.add(key);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        //1.更新数据库
-        updateById(shop);
-        //2.删除缓存
-        stringRedisTemplate.delete(CACHE_SHOP_KEY+id);
-        return Result.ok();
+        if (!stale.isEmpty()) {
+            stringRedisTemplate.unlink(stale);
+        }
+    }
+
+    private void addShopGeo(Shop shop) {
+        if (shop.getTypeId() == null || shop.getX() == null || shop.getY() == null) {
+            return;
+        }
+        stringRedisTemplate.opsForGeo().add(SHOP_GEO_KEY + shop.getTypeId(),
+                new Point(shop.getX(), shop.getY()), shop.getId().toString());
+    }
+
+    @Override
+    public int rebuildShopTypeListing() {
+        return shopTypeListing.rebuild();
     }
 
     /**
-     * @Param key:
-     * @return: boolean
-     * description:尝试获取锁
+     * @Param ids:
+     * @return: java.util.List<com.hmdp.entity.Shop>
+     * description: 按ids的顺序批量查询店铺，先查缓存，未命中的一次查询数据库
      */
-    private boolean tryLock(String key){
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", LOCK_SHOP_TTL, TimeUnit.SECONDS);
-        return flag;
+    private List<Shop> queryShopsByIds(List<Long> ids) {
+        return cacheClient.queryBatchWithPassThrough(CACHE_SHOP_KEY, ids, Shop.class, this::listByIds,
+                Shop::getId, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+    }
+
+    private List<Shop> fillDistance(List<Shop> shops, Map<Long, Double> distanceMap) {
+        shops.forEach(shop -> shop.setDistance(distanceMap.get(shop.getId())));
+        return shops;
+    }
+
+    @Override
+    public void invalidateShopCache() {
+        cacheClient.invalidateNamespace(CACHE_SHOP_KEY);
+    }
+
+    @Override
+    public void incrSold(Long shopId, int count) {
+        soldCounter.incr(shopId, count);
     }
 
     /**
-     * @Param key:
-     * @return: void
-     * description: 解锁
+     * 把销量增量批量写回数据库
      */
-    private void unLock(String key){
-        stringRedisTemplate.delete(key);
-    }
-
-    private void saveShopToRedis(Long id,Long expireSeconds){
-        //1.查询数据库
-        Shop shop = getById(id);
-        //2.封装逻辑过期时间
-        RedisData redisData=new RedisData();
-        redisData.setData(shop);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(expireSeconds));
-        stringRedisTemplate.opsForValue().set(CACHE_SHOP_KEY+id,JSONUtil.toJsonStr(redisData));
+    @Scheduled(fixedDelayString = "${hmdp.shop.sold-flush-millis:5000}")
+    public void flushSold() {
+        try {
+            soldCounter.flush(deltas -> {
+                getBaseMapper().incrSoldBatch(deltas);
+                // 事务提交后再更新按销量排序的列表，回滚时不更新
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        try {
+                            shopTypeListing.incrSold(deltas);
+                        } catch (Exception e) {
+                            // 排序列表只是展示顺序，下次重建时修正
+                            log.error("更新销量排序列表失败", e);
+                        }
+                    }
+                });
+            });
+        } catch (Exception e) {
+            log.error("店铺销量写回数据库失败", e);
+        }
     }
 }
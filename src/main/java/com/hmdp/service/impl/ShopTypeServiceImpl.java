@@ -1,21 +1,17 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.hmdp.utils.RedisConstants;
+import com.hmdp.utils.SnapshotRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
 
-import static com.hmdp.utils.RedisConstants.CACHE_SHOPTYPE_KEY;
+import static com.hmdp.utils.RedisConstants.SNAPSHOT_SHOP_TYPE;
 
 /**
  * <p>
@@ -28,18 +24,15 @@ import static com.hmdp.utils.RedisConstants.CACHE_SHOPTYPE_KEY;
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
     @Autowired
-    private StringRedisTemplate stringRedisTemplate;
+    private SnapshotRegistry snapshotRegistry;
 
+    @PostConstruct
+    public void init() {
+        snapshotRegistry.register(SNAPSHOT_SHOP_TYPE, () -> query().orderByAsc("sort").list());
+    }
 
     @Override
-    public Result queryTypeList() {
-        String jsonArray = stringRedisTemplate.opsForValue().get(CACHE_SHOPTYPE_KEY);
-        if (StrUtil.isNotBlank(jsonArray)){
-            List<ShopType> shopTypeList = JSONUtil.toList(jsonArray, ShopType.class);
-            return Result.ok(shopTypeList);
-        }
-        List<ShopType> shopTypesByMysql = query().orderByAsc("sort").list();
-        stringRedisTemplate.opsForValue().set(CACHE_SHOPTYPE_KEY,JSONUtil.toJsonStr(shopTypesByMysql), RedisConstants.CACHE_SHOP_TTL, TimeUnit.MINUTES);
-        return Result.ok(shopTypesByMysql);
+    public byte[] queryTypeList() {
+        return snapshotRegistry.get(SNAPSHOT_SHOP_TYPE).getBody();
     }
 }
@@ -13,14 +13,28 @@ import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import com.hmdp.utils.ExecutorRegistry;
+import com.hmdp.utils.SessionCache;
+import com.hmdp.utils.UserHolder;
+import cn.hutool.core.util.StrUtil;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import javax.servlet.http.HttpSession;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.TreeMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 import static com.hmdp.utils.RedisConstants.*;
@@ -39,8 +53,14 @@ import static com.hmdp.utils.SystemConstants.USER_NICK_NAME_PREFIX;
 @Log4j2
 public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IUserService {
 
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private SessionCache sessionCache;
+    @Autowired
+    private ExecutorRegistry executorRegistry;
 
     @Override
     public Result sendCode(String phone, HttpSession session) {
@@ -83,6 +103,195 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         return Result.ok(token);
     }
 
+    @Override
+    public Result logout(String token) {
+        if (StrUtil.isNotBlank(token)) {
+            sessionCache.invalidate(token);
+        }
+        return Result.ok();
+    }
+
+    @Override
+    public Result sign() {
+        Long userId = UserHolder.getUser().getId();
+        LocalDate today = LocalDate.now();
+        // 每个用户每月一个位图，第1天对应偏移量0
+        Boolean signed = stringRedisTemplate.opsForValue()
+                .setBit(signKey(userId, YearMonth.from(today)), today.getDayOfMonth() - 1, true);
+        return Result.ok(!Boolean.TRUE.equals(signed));
+    }
+
+    @Override
+    public Result signStats(String month) {
+        Long userId = UserHolder.getUser().getId();
+        YearMonth current = YearMonth.now();
+        YearMonth target;
+        try {
+            target = StrUtil.isBlank(month) ? current : YearMonth.parse(month, MONTH_FORMATTER);
+        } catch (DateTimeParseException e) {
+            return Result.fail("月份格式错误");
+        }
+        boolean isCurrent = target.equals(current);
+        int days = isCurrent ? LocalDate.now().getDayOfMonth() : target.lengthOfMonth();
+        long bits;
+        long count;
+        long previousBits = 0;
+        YearMonth previous = current.minusMonths(1);
+        if (target.isBefore(previous)) {
+            //1.上上个月及更早已经归档，从历史hash中读取，未归档时仍读取位图
+            Object archived = stringRedisTemplate.opsForHash().get(USER_SIGN_HISTORY_KEY + userId, target.format(MONTH_FORMATTER));
+            bits = archived != null ? Long.parseLong(archived.toString()) : readSignBits(userId, target, days);
+            count = Long.bitCount(bits);
+        } else {
+            //2.一次往返读取本月位图、本月签到天数，本月时同时读取上个月位图用于计算跨月的连续签到
+            String key = signKey(userId, target);
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.bitfield(key, BitFieldSubCommands.create().get(BitFieldSubCommands.BitFieldType.unsigned(days)).valueAt(0));
+                conn.bitCount(key);
+                if (isCurrent) {
+                    conn.bitfield(signKey(userId, previous), BitFieldSubCommands.create()
+                            .get(BitFieldSubCommands.BitFieldType.unsigned(previous.lengthOfMonth())).valueAt(0));
+                }
+                return null;
+            });
+            bits = firstValue(results.get(0));
+            count = results.get(1) == null ? 0 : ((Number) results.get(1)).longValue();
+            if (isCurrent) {
+                previousBits = firstValue(results.get(2));
+            }
+        }
+        //3.统计
+        Map<String, Object> stats = new LinkedHashMap<>();
+        List<Integer> signedDays = new ArrayList<>();
+        int longest = 0;
+        int run = 0;
+        for (int day = 1; day <= days; day++) {
+            if (((bits >>> (days - day)) & 1) == 1) {
+                signedDays.add(day);
+                longest = Math.max(longest, ++run);
+            } else {
+                run = 0;
+            }
+        }
+        stats.put("month", target.format(MONTH_FORMATTER));
+        stats.put("count", count);
+        stats.put("days", signedDays);
+        stats.put("longestStreak", longest);
+        if (isCurrent) {
+            stats.put("streak", currentStreak(bits, days, previousBits, previous.lengthOfMonth()));
+        }
+        return Result.ok(stats);
+    }
+
+    /**
+     * 截止今天的连续签到天数，今天还没签到时从昨天开始计算，连续到1号时继续计算上个月
+     */
+    static int currentStreak(long bits, int days, long previousBits, int previousDays) {
+        if ((bits & 1) == 0) {
+            bits >>>= 1;
+            days--;
+        }
+        int streak = Long.numberOfTrailingZeros(~bits);
+        if (streak >= days) {
+            streak = days + Math.min(Long.numberOfTrailingZeros(~previousBits), previousDays);
+        }
+        return streak;
+    }
+
+    private long readSignBits(Long userId, YearMonth month, int days) {
+        List<Long> values = stringRedisTemplate.opsForValue().bitField(signKey(userId, month),
+                BitFieldSubCommands.create().get(BitFieldSubCommands.BitFieldType.unsigned(days)).valueAt(0));
+        return values == null || values.isEmpty() || values.get(0) == null ? 0 : values.get(0);
+    }
+
+    private static long firstValue(Object result) {
+        List<?> values = (List<?>) result;
+        return values == null || values.isEmpty() || values.get(0) == null ? 0 : ((Number) values.get(0)).longValue();
+    }
+
+    @Override
+    public int rollupSign(String month) {
+        YearMonth target = YearMonth.parse(month, MONTH_FORMATTER);
+        if (!isArchivable(target)) {
+            // 本月和上个月的位图仍在使用，不能归档
+            return 0;
+        }
+        String suffix = ":" + target.format(MONTH_FORMATTER);
+        BitFieldSubCommands get = BitFieldSubCommands.create()
+                .get(BitFieldSubCommands.BitFieldType.unsigned(target.lengthOfMonth())).valueAt(0);
+        ScanOptions options = ScanOptions.scanOptions().match(USER_SIGN_KEY + "*" + suffix).count(SWEEP_BATCH_SIZE).build();
+        int count = 0;
+        try (Cursor<byte[]> cursor = stringRedisTemplate.executeWithStickyConnection(connection -> connection.scan(options))) {
+            List<String> batch = new ArrayList<>(SWEEP_BATCH_SIZE);
+            while (cursor.hasNext()) {
+                batch.add(new String(cursor.next(), StandardCharsets.UTF_8));
+                if (batch.size() >= SWEEP_BATCH_SIZE || !cursor.hasNext()) {
+                    count += rollupBatch(batch, suffix, get);
+                    batch.clear();
+                    Thread.sleep(SWEEP_PAUSE_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        log.info("签到位图归档完成，月份：{}，用户数：{}", month, count);
+        return count;
+    }
+
+    /**
+     * 一次管道读取一批位图，再一次管道写入历史hash并删除位图
+     */
+    private int rollupBatch(List<String> keys, String suffix, BitFieldSubCommands get) {
+        List<Object> values = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            keys.forEach(key -> conn.bitfield(key, get));
+            return null;
+        });
+        String field = suffix.substring(1);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keys.get(i);
+                String userId = key.substring(USER_SIGN_KEY.length(), key.length() - suffix.length());
+                conn.hSet(USER_SIGN_HISTORY_KEY + userId, field, String.valueOf(firstValue(values.get(i))));
+                conn.unlink(key);
+            }
+            return null;
+        });
+        return keys.size();
+    }
+
+    /**
+     * @Param month:
+     * @return: boolean 是否可以归档，只能归档上上个月及更早的月份
+     */
+    private static boolean isArchivable(YearMonth month) {
+        return !month.isAfter(YearMonth.now().minusMonths(2));
+    }
+
+    /**
+     * 每月初归档上上个月的签到位图，上个月保留用于计算跨月的连续签到；
+     * 归档要SCAN全部位图并分批暂停，提交到独立线程池执行，不阻塞其他定时任务
+     */
+    @Scheduled(cron = "${hmdp.sign.rollup-cron:0 30 3 1 * ?}")
+    public void rollupSignMonthly() {
+        String month = YearMonth.now().minusMonths(2).format(MONTH_FORMATTER);
+        executorRegistry.get("sign-rollup").execute(() -> {
+            try {
+                rollupSign(month);
+            } catch (Exception e) {
+                log.error("签到位图归档失败，月份：{}", month, e);
+            }
+        });
+    }
+
+    private static String signKey(Long userId, YearMonth month) {
+        return USER_SIGN_KEY + userId + ":" + month.format(MONTH_FORMATTER);
+    }
+
     private User createUserWithPhone(String phone) {
         User user=new User();
         user.setPhone(phone);
@@ -0,0 +1,113 @@
+package com.hmdp.service.impl;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.User;
+import com.hmdp.service.IUserService;
+import com.hmdp.service.IUserSummaryService;
+import com.hmdp.utils.NearCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 用户摘要的三级查询：本地缓存 -> Redis hash（cache:user:summary:{id}）-> 数据库
+ *              每一级都是批量操作，Redis一次管道往返，数据库一次IN查询，一页的开销与作者数量无关
+ */
+@Service
+public class UserSummaryServiceImpl implements IUserSummaryService {
+
+    private static final String FIELD_NICK_NAME = "nickName";
+    private static final String FIELD_ICON = "icon";
+
+    @Autowired
+    private IUserService userService;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    private final NearCache<Long, UserDTO> nearCache = new NearCache<>(USER_SUMMARY_LOCAL_TTL, TimeUnit.SECONDS, 10000);
+
+    @Override
+    public Map<Long, UserDTO> queryByIds(Collection<Long> userIds) {
+        Map<Long, UserDTO> result = new HashMap<>(userIds.size() * 2);
+        //1.查询本地缓存
+        List<Long> misses = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(userIds)) {
+            UserDTO user = nearCache.get(id);
+            if (user != null) {
+                result.put(id, user);
+            } else {
+                misses.add(id);
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+        //2.一次管道查询Redis
+        List<Object> hashes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Long id : misses) {
+                conn.hGetAll(USER_SUMMARY_KEY + id);
+            }
+            return null;
+        });
+        List<Long> dbMisses = new ArrayList<>();
+        for (int i = 0; i < misses.size(); i++) {
+            Map<?, ?> hash = (Map<?, ?>) hashes.get(i);
+            if (hash == null || hash.isEmpty()) {
+                dbMisses.add(misses.get(i));
+                continue;
+            }
+            UserDTO user = toUser(misses.get(i), hash);
+            result.put(user.getId(), user);
+            nearCache.put(user.getId(), user);
+        }
+        if (dbMisses.isEmpty()) {
+            return result;
+        }
+        //3.一次查询数据库，写回Redis
+        List<UserDTO> loaded = new ArrayList<>(dbMisses.size());
+        for (User user : userService.listByIds(dbMisses)) {
+            UserDTO dto = BeanUtil.copyProperties(user, UserDTO.class);
+            loaded.add(dto);
+            result.put(dto.getId(), dto);
+            nearCache.put(dto.getId(), dto);
+        }
+        long ttl = TimeUnit.MINUTES.toSeconds(USER_SUMMARY_TTL);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (UserDTO user : loaded) {
+                String key = USER_SUMMARY_KEY + user.getId();
+                Map<String, String> hash = new HashMap<>(4);
+                hash.put(FIELD_NICK_NAME, user.getNickName() == null ? "" : user.getNickName());
+                hash.put(FIELD_ICON, user.getIcon() == null ? "" : user.getIcon());
+                conn.hMSet(key, hash);
+                conn.expire(key, ttl);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    @Override
+    public void evict(Long userId) {
+        nearCache.remove(userId);
+        stringRedisTemplate.delete(USER_SUMMARY_KEY + userId);
+    }
+
+    private UserDTO toUser(Long id, Map<?, ?> hash) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        user.setNickName((String) hash.get(FIELD_NICK_NAME));
+        user.setIcon((String) hash.get(FIELD_ICON));
+        return user;
+    }
+}
@@ -5,9 +5,13 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.VoucherOrderMapper;
 import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IShopService;
 import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.service.IVoucherService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.ExecutorRegistry;
 import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.ShopLeaderboard;
 import com.hmdp.utils.UserHolder;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
@@ -19,6 +23,8 @@ import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -47,6 +53,12 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     private StringRedisTemplate stringRedisTemplate;
     @Resource
     private RedissonClient redissonClient;
+    @Autowired
+    private ShopLeaderboard shopLeaderboard;
+    @Autowired
+    private IShopService shopService;
+    @Autowired
+    private IVoucherService voucherService;
     private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
 
     static {
@@ -75,14 +87,17 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
 
 
 //    异步处理线程池
-    private static final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor();
+    @Autowired
+    private ExecutorRegistry executorRegistry;
+    private ExecutorService seckillOrderExecutor;
 
     private class VoucherOrderHandler implements Runnable {
         String queueName = "stream.orders";
 
         @Override
         public void run() {
-            while (true) {
+            // 应用关闭时线程池进入shutdown状态，处理完当前消息后退出循环
+            while (!seckillOrderExecutor.isShutdown()) {
                 try {
                     // 获取消息队列中的订单信息 XREADGROUP GROUP g1 c1 COUNT 1 BLOCK 2000 STREAMS s1 >
                     List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
@@ -108,7 +123,7 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         }
 
         private void handlePendingList() {
-            while (true) {
+            while (!seckillOrderExecutor.isShutdown()) {
                 try {
                     // 获取pending-list中的订单信息 XREADGROUP GROUP g1 c1 COUNT 1 STREAMS streams.order 0
                     List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
@@ -132,7 +147,8 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
                     try {
                         Thread.sleep(20);
                     } catch (InterruptedException ex) {
-                        ex.printStackTrace();
+                        Thread.currentThread().interrupt();
+                        return;
                     }
                 }
             }
@@ -142,7 +158,8 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
 
     @PostConstruct
     private void init() {
-        SECKILL_ORDER_EXECUTOR.submit(new VoucherOrderHandler());
+        seckillOrderExecutor = executorRegistry.get("seckill-order");
+        seckillOrderExecutor.submit(new VoucherOrderHandler());
     }
 
     private void handleVoucherOrder(VoucherOrder voucherOrder) {
@@ -264,6 +281,36 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         // 7.创建订单
         save(voucherOrder);
 
+        // 8.订单提交后更新销量榜、删除包含库存的优惠券列表缓存，事务回滚时不处理
+        Long voucherId = voucherOrder.getVoucherId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recordSale(voucherId);
+                }
+            });
+        } else {
+            recordSale(voucherId);
+        }
+    }
+
+    /**
+     * 销量和榜单只是统计数据，更新失败不影响订单
+     */
+    private void recordSale(Long voucherId) {
+        try {
+            Long shopId = shopLeaderboard.shopOf(voucherId);
+            if (shopId == null) {
+                return;
+            }
+            voucherService.evictVoucherStockOfShop(shopId);
+            shopService.incrSold(shopId, 1);
+            shopLeaderboard.recordSale(shopId);
+        } catch (Exception e) {
+            log.error("更新销量失败，voucherId：" + voucherId, e);
+        }
+
     }
 
 }
@@ -7,14 +7,17 @@ import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.RawResultCache;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.Resource;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
 
-import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.*;
 
 /**
  * <p>
@@ -31,13 +34,49 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     private ISeckillVoucherService seckillVoucherService;
     @Resource
     private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private RawResultCache rawResultCache;
+
+    @Override
+    public byte[] queryVoucherOfShop(Long shopId) {
+        // 查询优惠券信息，列表中包含秒杀库存，订单扣减库存提交后限频删除缓存（见evictVoucherStockOfShop）
+        return rawResultCache.get(CACHE_VOUCHER_RESULT_KEY + shopId,
+                () -> Result.ok(getBaseMapper().queryVoucherOfShop(shopId)),
+                CACHE_VOUCHER_TTL, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public boolean save(Voucher voucher) {
+        boolean success = super.save(voucher);
+        // 新增优惠券后删除店铺的优惠券列表缓存
+        evictVoucherOfShop(voucher.getShopId());
+        return success;
+    }
+
+    @Override
+    public void evictVoucherOfShop(Long shopId) {
+        // 秒杀券的信息在事务提交后才可见，提前删除会被并发查询用旧数据重建
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rawResultCache.evict(CACHE_VOUCHER_RESULT_KEY + shopId);
+                }
+            });
+        } else {
+            rawResultCache.evict(CACHE_VOUCHER_RESULT_KEY + shopId);
+        }
+    }
 
     @Override
-    public Result queryVoucherOfShop(Long shopId) {
-        // 查询优惠券信息
-        List<Voucher> vouchers = getBaseMapper().queryVoucherOfShop(shopId);
-        // 返回结果
-        return Result.ok(vouchers);
+    public void evictVoucherStockOfShop(Long shopId) {
+        // 列表中的库存只用于展示，下单以Redis中的秒杀库存为准；
+        // 高峰期每单都删除会让缓存一直未命中，时间窗口内只删除一次，之后没有新订单时由缓存TTL兜底
+        Boolean first = stringRedisTemplate.opsForValue().setIfAbsent(CACHE_VOUCHER_STOCK_EVICT_KEY + shopId, "1",
+                CACHE_VOUCHER_STOCK_EVICT_SECONDS, TimeUnit.SECONDS);
+        if (Boolean.TRUE.equals(first)) {
+            rawResultCache.evict(CACHE_VOUCHER_RESULT_KEY + shopId);
+        }
     }
 
     @Override
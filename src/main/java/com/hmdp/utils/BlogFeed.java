@@ -0,0 +1,188 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Follow;
+import com.hmdp.mapper.FollowMapper;
+import com.hmdp.service.IFollowService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 关注动态的推拉结合
+ *              普通作者发布博文时，由feed-fanout线程池分批查询粉丝，管道写入每个粉丝的收件箱 feed:{userId}；
+ *              粉丝数超过FEED_PUSH_LIMIT的大V只写入自己的发件箱 feed:out:{authorId}，并记入 feed:big，
+ *              读取时合并自己的收件箱和关注的大V的发件箱；收件箱和发件箱都只保留最近FEED_BOX_SIZE条
+ */
+@Slf4j
+@Component
+public class BlogFeed {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final FollowMapper followMapper;
+    private final IFollowService followService;
+    private final ExecutorRegistry executorRegistry;
+    private final NearCache<String, Set<String>> bigAuthors = new NearCache<>(FEED_BIG_LOCAL_TTL, TimeUnit.SECONDS, 1);
+
+    public BlogFeed(StringRedisTemplate stringRedisTemplate, FollowMapper followMapper, IFollowService followService,
+                    ExecutorRegistry executorRegistry) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.followMapper = followMapper;
+        this.followService = followService;
+        this.executorRegistry = executorRegistry;
+    }
+
+    /**
+     * 一页动态的博文id和滚动分页的游标
+     */
+    public static class Page {
+        public final List<Long> ids;
+        public final long minTime;
+        public final int offset;
+
+        Page(List<Long> ids, long minTime, int offset) {
+            this.ids = ids;
+            this.minTime = minTime;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * @Param blog: 已保存的博文
+     * @return: void
+     * description: 发布博文到粉丝的动态，推送在线程池中异步执行
+     */
+    public void publish(Blog blog) {
+        long time = blog.getCreateTime() == null ? System.currentTimeMillis()
+                : blog.getCreateTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Long authorId = blog.getUserId();
+        if (followService.countFollowers(authorId) > FEED_PUSH_LIMIT) {
+            // 大V只写发件箱，由粉丝读取时拉取
+            String outbox = FEED_OUTBOX_KEY + authorId;
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.sAdd(FEED_BIG_KEY, authorId.toString());
+                conn.zAdd(outbox, time, blog.getId().toString());
+                conn.zRemRange(outbox, 0, -FEED_BOX_SIZE - 1);
+                return null;
+            });
+            return;
+        }
+        try {
+            executorRegistry.get("feed-fanout").execute(() -> fanOut(authorId, blog.getId(), time));
+        } catch (RejectedExecutionException e) {
+            log.warn("动态推送队列已满，在当前线程推送，blogId：{}", blog.getId());
+            fanOut(authorId, blog.getId(), time);
+        }
+    }
+
+    /**
+     * 按id分批查询粉丝，每批一次管道写入收件箱并裁剪
+     */
+    private void fanOut(Long authorId, Long blogId, long time) {
+        String member = blogId.toString();
+        long lastId = 0;
+        while (true) {
+            List<Follow> batch = followMapper.selectList(new QueryWrapper<Follow>()
+                    .select("id", "user_id")
+                    .eq("follow_user_id", authorId)
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("LIMIT " + FEED_FANOUT_BATCH));
+            if (batch.isEmpty()) {
+                return;
+            }
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (Follow follow : batch) {
+                    String inbox = FEED_KEY + follow.getUserId();
+                    conn.zAdd(inbox, time, member);
+                    conn.zRemRange(inbox, 0, -FEED_BOX_SIZE - 1);
+                }
+                return null;
+            });
+            if (batch.size() < FEED_FANOUT_BATCH) {
+                return;
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    /**
+     * @Param userId: 当前用户
+     * @Param followees: 当前用户关注的用户id，升序排列
+     * @Param max: 上一页最小的时间戳，第一页传当前时间
+     * @Param offset: 上一页中与最小时间戳相同的条数，第一页传0
+     * @Param count: 每页数量
+     * @return: com.hmdp.utils.BlogFeed.Page
+     * description: 滚动分页读取动态，新发布的博文时间戳更大，不会影响后续页
+     */
+    public Page read(Long userId, long[] followees, long max, int offset, int count) {
+        //1.确定需要拉取的大V发件箱
+        Set<String> big = bigAuthors.get(FEED_BIG_KEY, k -> stringRedisTemplate.opsForSet().members(k));
+        List<String> keys = new ArrayList<>();
+        keys.add(FEED_KEY + userId);
+        if (big != null && !big.isEmpty()) {
+            for (String author : big) {
+                if (Arrays.binarySearch(followees, Long.parseLong(author)) >= 0) {
+                    keys.add(FEED_OUTBOX_KEY + author);
+                }
+            }
+        }
+        //2.一次管道从每个来源取出时间戳不大于max的前offset+count条
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String key : keys) {
+                conn.zRevRangeByScoreWithScores(key, 0, max, 0, offset + count);
+            }
+            return null;
+        });
+        //3.合并后按时间戳倒序，跳过上一页已经返回的offset条
+        List<ZSetOperations.TypedTuple<String>> merged = new ArrayList<>();
+        for (Object result : results) {
+            for (Object tuple : (Collection<?>) result) {
+                @SuppressWarnings("unchecked")
+                ZSetOperations.TypedTuple<String> typed = (ZSetOperations.TypedTuple<String>) tuple;
+                merged.add(typed);
+            }
+        }
+        merged.sort(Comparator.comparing((ZSetOperations.TypedTuple<String> t) -> t.getScore()).reversed()
+                .thenComparing(ZSetOperations.TypedTuple::getValue, Comparator.reverseOrder()));
+        List<ZSetOperations.TypedTuple<String>> page = merged.stream().skip(offset).limit(count).collect(Collectors.toList());
+        if (page.isEmpty()) {
+            return new Page(Collections.emptyList(), max, offset);
+        }
+        //4.计算下一页的游标：最小时间戳，以及本页中等于最小时间戳的条数
+        List<Long> ids = new ArrayList<>(page.size());
+        long minTime = 0;
+        int same = 0;
+        for (ZSetOperations.TypedTuple<String> tuple : page) {
+            ids.add(Long.valueOf(tuple.getValue()));
+            long time = tuple.getScore().longValue();
+            if (time == minTime) {
+                same++;
+            } else {
+                minTime = time;
+                same = 1;
+            }
+        }
+        if (minTime == max) {
+            same += offset;
+        }
+        return new Page(ids, minTime, same);
+    }
+}
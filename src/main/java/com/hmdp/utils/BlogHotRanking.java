@@ -0,0 +1,251 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.dto.CursorResult;
+import com.hmdp.entity.Blog;
+import com.hmdp.mapper.BlogMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 博文热度排行
+ *              热度 = (点赞数 + 2 * 评论数 + 1) / (发布小时数 + 2) ^ GRAVITY，保存在SortedSet blog:hot中；
+ *              点赞、评论时只把博文id放入待重算集合 blog:hot:dirty，由定时任务批量重算，
+ *              同时重算榜单前HOT_WINDOW名：热度只会随时间降低，榜单外的旧分数偏高的博文一旦进入窗口就会被重算
+ */
+@Slf4j
+@Component
+public class BlogHotRanking {
+
+    private static final double GRAVITY = 1.5;
+    /**
+     * 每次重算的榜单窗口大小
+     */
+    private static final int HOT_WINDOW = 200;
+    /**
+     * 每次从待重算集合中取出的数量
+     */
+    private static final int DIRTY_BATCH = 500;
+    /**
+     * 榜单保留的数量
+     */
+    private static final int HOT_KEEP_SIZE = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final BlogMapper blogMapper;
+    private final ExecutorRegistry executorRegistry;
+    /**
+     * 启动时榜单未建立，从数据库重建最近多少天的博文
+     */
+    private final int initDays;
+
+    public BlogHotRanking(StringRedisTemplate stringRedisTemplate, BlogMapper blogMapper, ExecutorRegistry executorRegistry,
+                          @Value("${hmdp.blog.hot-init-days:30}") int initDays) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.blogMapper = blogMapper;
+        this.executorRegistry = executorRegistry;
+        this.initDays = initDays;
+    }
+
+    /**
+     * 榜单未建立时（例如Redis是空的）在后台从数据库重建，重建完成前调用方查询数据库
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (isReady()) {
+            return;
+        }
+        executorRegistry.get("index-loader").execute(() -> {
+            try {
+                rebuild(initDays);
+            } catch (Exception e) {
+                log.error("博文热度榜重建失败", e);
+            }
+        });
+    }
+
+    public static double score(int liked, int comments, LocalDateTime createTime) {
+        double hours = createTime == null ? 0 : Math.max(0, Duration.between(createTime, LocalDateTime.now()).toMinutes() / 60.0);
+        return (liked + 2.0 * comments + 1) / Math.pow(hours + 2, GRAVITY);
+    }
+
+    /**
+     * @return: boolean
+     * description: 榜单是否已经从数据库全量建立过，未建立时调用方查询数据库；
+     *              只有新发布的博文写入时blog:hot也会存在，因此用单独的标记判断
+     */
+    public boolean isReady() {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(BLOG_HOT_READY_KEY));
+    }
+
+    /**
+     * @Param current: 页码
+     * @Param pageSize:
+     * @return: java.util.List<java.lang.Long> 当前页的博文id
+     */
+    public List<Long> page(int current, int pageSize) {
+        long start = (long) (current - 1) * pageSize;
+        Set<String> members = stringRedisTemplate.opsForZSet().reverseRange(BLOG_HOT_KEY, start, start + pageSize - 1);
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return members.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    /**
+     * @Param cursor: 上一页返回的游标，第一页传空字符串
+     * @Param size: 每页数量
+     * @return: com.hmdp.dto.CursorResult<java.lang.Long> 当前页的博文id，游标格式错误时返回null
+     * description: 按热度游标分页，游标是上一页最后一条的 (热度, id)，
+     *              与ZREVRANGEBYSCORE的顺序一致：热度倒序，热度相同时按member字典序倒序
+     */
+    public CursorResult<Long> page(String cursor, int size) {
+        double max = Double.POSITIVE_INFINITY;
+        String lastMember = null;
+        if (StrUtil.isNotBlank(cursor)) {
+            try {
+                String[] parts = Base64.decodeStr(cursor).split(":");
+                max = Double.parseDouble(parts[0]);
+                lastMember = String.valueOf(Long.parseLong(parts[1]));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+        // 从游标的热度开始向后取，跳过热度相同且已经返回过的博文，多取一条判断是否还有下一页
+        List<ZSetOperations.TypedTuple<String>> tuples = new ArrayList<>(size + 1);
+        long offset = 0;
+        while (tuples.size() <= size) {
+            Set<ZSetOperations.TypedTuple<String>> batch = stringRedisTemplate.opsForZSet()
+                    .reverseRangeByScoreWithScores(BLOG_HOT_KEY, Double.NEGATIVE_INFINITY, max, offset, size + 1);
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            for (ZSetOperations.TypedTuple<String> tuple : batch) {
+                if (lastMember == null || tuple.getScore() < max || tuple.getValue().compareTo(lastMember) < 0) {
+                    tuples.add(tuple);
+                }
+            }
+            if (batch.size() <= size) {
+                break;
+            }
+            offset += batch.size();
+        }
+        List<Long> ids = new ArrayList<>(Math.min(size, tuples.size()));
+        for (int i = 0; i < tuples.size() && i < size; i++) {
+            ids.add(Long.valueOf(tuples.get(i).getValue()));
+        }
+        if (tuples.size() <= size) {
+            return new CursorResult<>(ids, null);
+        }
+        ZSetOperations.TypedTuple<String> last = tuples.get(size - 1);
+        return new CursorResult<>(ids, Base64.encodeUrlSafe(last.getScore() + ":" + last.getValue()));
+    }
+
+    /**
+     * 新发布的博文直接计算热度加入榜单
+     */
+    public void onPublished(Blog blog) {
+        stringRedisTemplate.opsForZSet().add(BLOG_HOT_KEY, blog.getId().toString(),
+                score(0, 0, blog.getCreateTime() == null ? LocalDateTime.now() : blog.getCreateTime()));
+    }
+
+    /**
+     * 点赞、评论后标记待重算
+     */
+    public void markDirty(Long blogId) {
+        stringRedisTemplate.opsForSet().add(BLOG_HOT_DIRTY_KEY, blogId.toString());
+    }
+
+    /**
+     * 批量重算待重算的博文和榜单窗口内的博文
+     */
+    @Scheduled(fixedDelayString = "${hmdp.blog.hot-rescore-millis:60000}")
+    public void rescore() {
+        try {
+            Set<Long> ids = new HashSet<>();
+            List<String> dirty = stringRedisTemplate.opsForSet().pop(BLOG_HOT_DIRTY_KEY, DIRTY_BATCH);
+            if (dirty != null) {
+                dirty.forEach(id -> ids.add(Long.valueOf(id)));
+            }
+            Set<String> window = stringRedisTemplate.opsForZSet().reverseRange(BLOG_HOT_KEY, 0, HOT_WINDOW - 1);
+            if (window != null) {
+                window.forEach(id -> ids.add(Long.valueOf(id)));
+            }
+            if (ids.isEmpty()) {
+                return;
+            }
+            List<Blog> blogs = blogMapper.selectList(new QueryWrapper<Blog>()
+                    .select("id", "liked", "comments", "create_time").in("id", ids));
+            write(blogs);
+        } catch (Exception e) {
+            log.error("博文热度重算失败", e);
+        }
+    }
+
+    /**
+     * @Param days: 只计算最近days天发布的博文
+     * @return: int 写入榜单的博文数量
+     * description: 从数据库重建榜单
+     */
+    public int rebuild(int days) {
+        List<Blog> blogs = blogMapper.selectList(new QueryWrapper<Blog>()
+                .select("id", "liked", "comments", "create_time")
+                .ge("create_time", LocalDateTime.now().minusDays(days)));
+        write(blogs);
+        stringRedisTemplate.opsForValue().set(BLOG_HOT_READY_KEY, "1");
+        log.info("博文热度榜重建完成，博文数量：{}", blogs.size());
+        return Math.min(blogs.size(), HOT_KEEP_SIZE);
+    }
+
+    private static int withDelta(Integer value, int delta) {
+        return Math.max(0, (value == null ? 0 : value) + delta);
+    }
+
+    /**
+     * 点赞数、评论数加上尚未写回数据库的增量后计算热度，一次管道写入并裁剪榜单
+     */
+    private void write(List<Blog> blogs) {
+        if (blogs.isEmpty()) {
+            return;
+        }
+        String[] fields = blogs.stream().map(blog -> blog.getId().toString()).toArray(String[]::new);
+        List<Object> deltas = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            RedisDeltaCounter.pipelineDeltas(conn, BLOG_LIKED_DELTA_KEY, fields);
+            RedisDeltaCounter.pipelineDeltas(conn, BLOG_COMMENTS_DELTA_KEY, fields);
+            return null;
+        });
+        Map<String, Double> scores = new HashMap<>(blogs.size() * 2);
+        for (int i = 0; i < blogs.size(); i++) {
+            Blog blog = blogs.get(i);
+            int liked = withDelta(blog.getLiked(), RedisDeltaCounter.sumDeltas(deltas, 0, i));
+            int comments = withDelta(blog.getComments(), RedisDeltaCounter.sumDeltas(deltas, 2, i));
+            scores.put(blog.getId().toString(), score(liked, comments, blog.getCreateTime()));
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            scores.forEach((id, score) -> conn.zAdd(BLOG_HOT_KEY, score, id));
+            conn.zRemRange(BLOG_HOT_KEY, 0, -HOT_KEEP_SIZE - 1);
+            return null;
+        });
+    }
+}
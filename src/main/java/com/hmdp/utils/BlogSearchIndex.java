@@ -0,0 +1,596 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Blog;
+import com.hmdp.mapper.BlogMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 博文标题、正文的全文检索倒排索引，替代 LIKE '%keyword%' 全表扫描
+ *              中日韩文字按相邻两个字切分，字母数字按单词切分，标题的词频按TITLE_WEIGHT倍计算；
+ *              每个词对应一个压缩位图（RoaringBitmap）保存博文id，词频为1的不单独存储；
+ *              查询时按BM25计算相关度，再按点赞数加权排序；新博文发布时增量加入索引，
+ *              定时把索引写入快照文件，重启时通过内存映射读取快照，只需从数据库补齐快照之后发布的博文
+ */
+@Slf4j
+@Component
+public class BlogSearchIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x424C4753;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_WEIGHT = 3;
+    /**
+     * 点赞数加权：相关度 * (1 + LIKE_WEIGHT * ln(1 + 点赞数))
+     */
+    private static final double LIKE_WEIGHT = 0.1;
+    private static final int LOAD_BATCH = 1000;
+    /**
+     * 单次查询的时间预算，超出后停止累加相关度，按已计算的部分排序
+     */
+    private static final long SEARCH_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final BlogMapper blogMapper;
+    private final ExecutorRegistry executorRegistry;
+    private final Path snapshotPath;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private TreeMap<String, Posting> postings = new TreeMap<>();
+    private Map<Integer, Doc> docs = new HashMap<>();
+    private long totalLength;
+    /**
+     * 已加入索引的最大博文id，重启后从这里开始补齐
+     */
+    private long maxId;
+    /**
+     * 重建期间新增的博文，不为null表示正在重建
+     */
+    private List<Blog> pendingBlogs;
+    private volatile boolean ready;
+    private volatile boolean dirty;
+
+    public BlogSearchIndex(BlogMapper blogMapper, ExecutorRegistry executorRegistry,
+                           @Value("${hmdp.blog.search.snapshot-path:blog-search.idx}") String snapshotPath) {
+        this.blogMapper = blogMapper;
+        this.executorRegistry = executorRegistry;
+        this.snapshotPath = Paths.get(snapshotPath);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        executorRegistry.get("index-loader").execute(() -> {
+            if (loadSnapshot()) {
+                catchUp();
+            } else {
+                rebuild();
+            }
+        });
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return: int 索引中的博文数量
+     * description: 从数据库全量重建索引
+     */
+    public synchronized int rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingBlogs = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            TreeMap<String, Posting> newPostings = new TreeMap<>();
+            Map<Integer, Doc> newDocs = new HashMap<>();
+            long length = 0;
+            long lastId = 0;
+            List<Blog> blogs;
+            do {
+                blogs = nextBatch(lastId);
+                for (Blog blog : blogs) {
+                    length += add(newPostings, newDocs, blog);
+                    lastId = blog.getId();
+                }
+            } while (blogs.size() == LOAD_BATCH);
+            newPostings.values().forEach(posting -> posting.docs.runOptimize());
+            int count;
+            lock.writeLock().lock();
+            try {
+                postings = newPostings;
+                docs = newDocs;
+                totalLength = length;
+                maxId = lastId;
+                // 构建期间发布的博文可能不在查询结果中，替换后重放
+                pendingBlogs.forEach(this::apply);
+                count = docs.size();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            ready = true;
+            dirty = true;
+            log.info("博文检索索引构建完成，博文数量：{}，词数量：{}", count, newPostings.size());
+            return count;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pendingBlogs = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 加载快照后，补齐快照之后发布的博文
+     */
+    private void catchUp() {
+        long lastId = maxId;
+        int count = 0;
+        List<Blog> blogs;
+        do {
+            blogs = nextBatch(lastId);
+            for (Blog blog : blogs) {
+                index(blog);
+                lastId = blog.getId();
+            }
+            count += blogs.size();
+        } while (blogs.size() == LOAD_BATCH);
+        ready = true;
+        log.info("博文检索索引从快照加载完成，博文数量：{}，补齐：{}", docs.size(), count);
+    }
+
+    /**
+     * 从数据库重新读取点赞数，覆盖索引中的值
+     * description: addLiked只在写回数据库的节点上执行，其他节点以及事务回滚造成的偏差由这里定时修正
+     */
+    @Scheduled(fixedDelayString = "${hmdp.blog.search.liked-refresh-millis:300000}")
+    public void refreshLiked() {
+        if (!ready) {
+            return;
+        }
+        long lastId = 0;
+        List<Blog> blogs;
+        do {
+            blogs = blogMapper.selectList(new QueryWrapper<Blog>()
+                    .select("id", "liked")
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("LIMIT " + LOAD_BATCH));
+            if (blogs.isEmpty()) {
+                break;
+            }
+            lock.writeLock().lock();
+            try {
+                for (Blog blog : blogs) {
+                    Doc doc = docs.get(blog.getId().intValue());
+                    int liked = blog.getLiked() == null ? 0 : blog.getLiked();
+                    if (doc != null && doc.liked != liked) {
+                        doc.liked = liked;
+                        dirty = true;
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            lastId = blogs.get(blogs.size() - 1).getId();
+        } while (blogs.size() == LOAD_BATCH);
+    }
+
+    private List<Blog> nextBatch(long lastId) {
+        return blogMapper.selectList(new QueryWrapper<Blog>()
+                .select("id", "title", "content", "liked")
+                .gt("id", lastId)
+                .orderByAsc("id")
+                .last("LIMIT " + LOAD_BATCH));
+    }
+
+    /**
+     * @Param blog: 需要id、title、content、liked
+     * @return: void
+     * description: 新增或更新一篇博文的索引
+     */
+    public void index(Blog blog) {
+        lock.writeLock().lock();
+        try {
+            apply(blog);
+            if (pendingBlogs != null) {
+                pendingBlogs.add(blog);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        dirty = true;
+    }
+
+    private void apply(Blog blog) {
+        totalLength -= remove(blog.getId().intValue());
+        totalLength += add(postings, docs, blog);
+        maxId = Math.max(maxId, blog.getId());
+    }
+
+    /**
+     * @Param deltas: 博文id -> 点赞数增量
+     * @return: void
+     * description: 点赞数写回数据库的事务提交后同步到索引
+     */
+    public void addLiked(Map<Long, Integer> deltas) {
+        lock.writeLock().lock();
+        try {
+            deltas.forEach((id, delta) -> {
+                Doc doc = docs.get(id.intValue());
+                if (doc != null) {
+                    doc.liked = Math.max(doc.liked + delta, 0);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        dirty = true;
+    }
+
+    /**
+     * @Param keyword: 关键字
+     * @Param current: 页码
+     * @Param pageSize: 每页数量
+     * @return: java.util.List<java.lang.Long> 当前页的博文id，按相关度排序
+     * description: 检索标题或正文包含关键字的博文
+     */
+    public List<Long> search(String keyword, int current, int pageSize) {
+        List<String> tokens = tokenize(keyword);
+        if (tokens.isEmpty() || current < 1 || current > SystemConstants.MAX_SEARCH_PAGE || pageSize < 1) {
+            return Collections.emptyList();
+        }
+        int topN = current * pageSize;
+        long deadline = System.nanoTime() + SEARCH_BUDGET_NANOS;
+        // 小顶堆，堆顶是当前相关度最低的博文
+        PriorityQueue<Hit> heap = new PriorityQueue<>(topN + 1, Comparator.comparingDouble(h -> h.score));
+        lock.readLock().lock();
+        try {
+            if (docs.isEmpty()) {
+                return Collections.emptyList();
+            }
+            double avgLength = (double) totalLength / docs.size();
+            Map<Integer, double[]> scores = new HashMap<>();
+            scan:
+            for (Posting posting : queryPostings(tokens)) {
+                int df = posting.docs.getCardinality();
+                double idf = Math.log(1 + (docs.size() - df + 0.5) / (df + 0.5));
+                IntIterator it = posting.docs.getIntIterator();
+                int scanned = 0;
+                while (it.hasNext()) {
+                    int id = it.next();
+                    int tf = posting.tf(id);
+                    double norm = K1 * (1 - B + B * docs.get(id).length / avgLength);
+                    scores.computeIfAbsent(id, k -> new double[1])[0] += idf * tf * (K1 + 1) / (tf + norm);
+                    if (++scanned % 1024 == 0 && System.nanoTime() > deadline) {
+                        log.warn("博文检索超出时间预算，关键字：{}", keyword);
+                        break scan;
+                    }
+                }
+            }
+            scores.forEach((id, score) -> {
+                heap.offer(new Hit(id, score[0] * (1 + LIKE_WEIGHT * Math.log1p(docs.get(id).liked))));
+                if (heap.size() > topN) {
+                    heap.poll();
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Hit> hits = new ArrayList<>(heap);
+        hits.sort(Comparator.<Hit>comparingDouble(h -> h.score).reversed().thenComparingInt(h -> -h.id));
+        List<Long> ids = new ArrayList<>(pageSize);
+        for (int i = (current - 1) * pageSize; i < hits.size(); i++) {
+            ids.add((long) hits.get(i).id);
+        }
+        return ids;
+    }
+
+    /**
+     * 关键字的每个词对应的倒排表；单个汉字取以它开头的所有词，再加上以它结尾的单字词
+     */
+    private List<Posting> queryPostings(List<String> tokens) {
+        List<Posting> result = new ArrayList<>();
+        for (String token : new LinkedHashSet<>(tokens)) {
+            if (token.length() == 1 && isCjk(token.charAt(0))) {
+                result.addAll(postings.subMap(token, true, token + Character.MAX_VALUE, true).values());
+                continue;
+            }
+            Posting posting = postings.get(token);
+            if (posting != null) {
+                result.add(posting);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return: int 博文的词数（含标题加权）
+     */
+    private static int add(Map<String, Posting> postings, Map<Integer, Doc> docs, Blog blog) {
+        Map<String, Integer> tf = new HashMap<>();
+        for (String token : tokenize(blog.getTitle(), true)) {
+            tf.merge(token, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String token : tokenize(blog.getContent(), true)) {
+            tf.merge(token, 1, Integer::sum);
+        }
+        int id = blog.getId().intValue();
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : tf.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new Posting()).add(id, entry.getValue());
+            length += entry.getValue();
+        }
+        docs.put(id, new Doc(length, blog.getLiked() == null ? 0 : blog.getLiked(), tf.keySet().toArray(new String[0])));
+        return length;
+    }
+
+    /**
+     * @return: int 被移除的博文的词数，不存在时返回0
+     */
+    private int remove(int id) {
+        Doc doc = docs.remove(id);
+        if (doc == null) {
+            return 0;
+        }
+        for (String term : doc.terms) {
+            Posting posting = postings.get(term);
+            if (posting != null && posting.remove(id)) {
+                postings.remove(term);
+            }
+        }
+        return doc.length;
+    }
+
+    /**
+     * 索引有变化时写入快照：先写临时文件刷盘，再改名覆盖旧快照
+     */
+    @Scheduled(fixedDelayString = "${hmdp.blog.search.snapshot-millis:600000}")
+    @PreDestroy
+    public synchronized void snapshot() {
+        if (!ready || !dirty) {
+            return;
+        }
+        dirty = false;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(maxId);
+            out.writeLong(totalLength);
+            out.writeInt(docs.size());
+            for (Map.Entry<Integer, Doc> entry : docs.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.writeInt(entry.getValue().liked);
+            }
+            out.writeInt(postings.size());
+            for (Map.Entry<String, Posting> entry : postings.entrySet()) {
+                byte[] term = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(term.length);
+                out.write(term);
+                Posting posting = entry.getValue();
+                out.writeInt(posting.docs.serializedSizeInBytes());
+                posting.docs.serialize(out);
+                out.writeInt(posting.tf.size());
+                for (Map.Entry<Integer, Integer> tf : posting.tf.entrySet()) {
+                    out.writeInt(tf.getKey());
+                    out.writeInt(tf.getValue());
+                }
+            }
+        } catch (IOException e) {
+            dirty = true;
+            log.error("博文检索索引序列化失败", e);
+            return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("博文检索索引快照已写入，大小：{}字节", bytes.size());
+        } catch (IOException e) {
+            dirty = true;
+            log.error("博文检索索引快照写入失败", e);
+        }
+    }
+
+    /**
+     * @return: boolean 快照不存在或格式不对时返回false，需要全量重建
+     */
+    boolean loadSnapshot() {
+        if (!Files.exists(snapshotPath)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+                log.warn("博文检索索引快照格式不匹配，重新构建");
+                return false;
+            }
+            long snapshotMaxId = buffer.getLong();
+            long length = buffer.getLong();
+            int docCount = buffer.getInt();
+            Map<Integer, Doc> newDocs = new HashMap<>(docCount * 2);
+            Map<Integer, List<String>> docTerms = new HashMap<>(docCount * 2);
+            for (int i = 0; i < docCount; i++) {
+                int id = buffer.getInt();
+                newDocs.put(id, new Doc(buffer.getInt(), buffer.getInt(), null));
+                docTerms.put(id, new ArrayList<>());
+            }
+            int termCount = buffer.getInt();
+            TreeMap<String, Posting> newPostings = new TreeMap<>();
+            for (int i = 0; i < termCount; i++) {
+                byte[] term = new byte[buffer.getInt()];
+                buffer.get(term);
+                String text = new String(term, StandardCharsets.UTF_8);
+                Posting posting = new Posting();
+                int size = buffer.getInt();
+                int position = buffer.position();
+                posting.docs.deserialize(buffer);
+                buffer.position(position + size);
+                int tfCount = buffer.getInt();
+                for (int j = 0; j < tfCount; j++) {
+                    posting.tf.put(buffer.getInt(), buffer.getInt());
+                }
+                newPostings.put(text, posting);
+                posting.docs.forEach((int id) -> docTerms.get(id).add(text));
+            }
+            // 快照中不保存每篇博文的词表，从倒排表反推，用于之后的增量更新
+            docTerms.forEach((id, terms) -> newDocs.get(id).terms = terms.toArray(new String[0]));
+            lock.writeLock().lock();
+            try {
+                postings = newPostings;
+                docs = newDocs;
+                totalLength = length;
+                maxId = snapshotMaxId;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return true;
+        } catch (Exception e) {
+            log.error("博文检索索引快照读取失败，重新构建", e);
+            return false;
+        }
+    }
+
+    /**
+     * 分词：中日韩文字按相邻两个字切分（只有一个字时保留单字），字母数字按单词切分并转为小写
+     */
+    static List<String> tokenize(String text) {
+        return tokenize(text, false);
+    }
+
+    /**
+     * @Param trailing: 是否额外保留每段中日韩文字的最后一个字，建索引时为true，
+     *                  使以该字结尾的词（如"三文鱼"中的"鱼"）也能被单字查询命中
+     */
+    static List<String> tokenize(String text, boolean trailing) {
+        if (StrUtil.isBlank(text)) {
+            return Collections.emptyList();
+        }
+        String s = text.toLowerCase();
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            int start = i;
+            if (isCjk(c)) {
+                while (i < s.length() && isCjk(s.charAt(i))) {
+                    i++;
+                }
+                if (i - start == 1) {
+                    tokens.add(s.substring(start, i));
+                }
+                for (int j = start; j + 2 <= i; j++) {
+                    tokens.add(s.substring(j, j + 2));
+                }
+                if (trailing && i - start > 1) {
+                    tokens.add(s.substring(i - 1, i));
+                }
+            } else if (Character.isLetterOrDigit(c)) {
+                while (i < s.length() && Character.isLetterOrDigit(s.charAt(i)) && !isCjk(s.charAt(i))) {
+                    i++;
+                }
+                tokens.add(s.substring(start, i));
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * 一个词的倒排表，大多数词在一篇博文中只出现一次，词频大于1的才单独记录
+     */
+    private static class Posting {
+        final RoaringBitmap docs = new RoaringBitmap();
+        final Map<Integer, Integer> tf = new HashMap<>();
+
+        void add(int id, int count) {
+            docs.add(id);
+            if (count > 1) {
+                tf.put(id, count);
+            }
+        }
+
+        /**
+         * @return: boolean 倒排表是否已经为空
+         */
+        boolean remove(int id) {
+            docs.remove(id);
+            tf.remove(id);
+            return docs.isEmpty();
+        }
+
+        int tf(int id) {
+            return tf.getOrDefault(id, 1);
+        }
+    }
+
+    private static class Doc {
+        final int length;
+        int liked;
+        String[] terms;
+
+        Doc(int length, int liked, String[] terms) {
+            this.length = length;
+            this.liked = liked;
+            this.terms = terms;
+        }
+    }
+
+    private static class Hit {
+        final int id;
+        final double score;
+
+        Hit(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
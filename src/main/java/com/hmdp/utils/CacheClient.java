@@ -3,11 +3,18 @@ package com.hmdp.utils;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
-import com.hmdp.entity.Shop;
+import cn.hutool.crypto.digest.DigestUtil;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.function.Function;
 
@@ -22,26 +29,152 @@ import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
  *              方法2：将任意Java对象序列化为json并存储在string类型的key中，并且可以设置逻辑过期时间，用于处理缓存击穿问题
  *              方法3：根据指定的key查询缓存，并反序列化为指定类型，利用缓存空值的方式解决缓存穿透问题
  *              方法4：根据指定的key查询缓存，并反序列化为指定类型，需要利用逻辑过期解决缓存击穿问题
+ *              每次写入缓存时同时写入一个版本戳（json的摘要），用于生成HTTP ETag，判断版本时不需要反序列化缓存内容
+ *              按keyPrefix查询的缓存以keyPrefix作为命名空间，key中带有命名空间的代数，
+ *              整个命名空间失效只需要代数+1，旧代数的key由TTL或后台清理任务删除
  */
 @Component
 public class CacheClient {
     private final StringRedisTemplate stringRedisTemplate;
 
-    private static ExecutorService threadPool = new ThreadPoolExecutor(
-            2,
-            5,
-            3,
-            TimeUnit.SECONDS,
-            new LinkedBlockingDeque<>(3),
-            Executors.defaultThreadFactory(),
-            new ThreadPoolExecutor.DiscardOldestPolicy());
+    private final ExecutorService threadPool;
 
-    public CacheClient(StringRedisTemplate stringRedisTemplate) {
+    private final ExecutorService sweeper;
+
+    /**
+     * 命名空间代数的本地缓存，其他节点使命名空间失效后，本机最多延迟NAMESPACE_GEN_LOCAL_TTL毫秒感知
+     */
+    private final NearCache<String, Long> generations = new NearCache<>(NAMESPACE_GEN_LOCAL_TTL, TimeUnit.MILLISECONDS, 256);
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate, ExecutorRegistry executorRegistry) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.threadPool = executorRegistry.get("cache-rebuild");
+        this.sweeper = executorRegistry.get("cache-sweeper");
+    }
+
+    /**
+     * @Param namespace: 命名空间，即缓存key前缀，例如 cache:shop:
+     * @Param id:
+     * @return: java.lang.String
+     * description: 生成带命名空间代数的key，例如 cache:shop:v3:1
+     */
+    public String namespacedKey(String namespace, Object id) {
+        return namespace + "v" + generation(namespace) + ":" + id;
+    }
+
+    /**
+     * @Param namespace:
+     * @return: void
+     * description: 使整个命名空间失效，O(1)操作，旧代数的key交给后台低优先级任务清理；
+     *              每次清理所有比新代数小的key，清理任务被线程池丢弃时，遗留的key由下一次清理删除
+     */
+    public void invalidateNamespace(String namespace) {
+        Long newGen = stringRedisTemplate.opsForValue().increment(NAMESPACE_GEN_KEY + namespace);
+        generations.put(namespace, newGen);
+        sweeper.execute(() -> sweep(namespace, newGen));
+    }
+
+    private long generation(String namespace) {
+        return generations.get(namespace, ns -> {
+            String gen = stringRedisTemplate.opsForValue().get(NAMESPACE_GEN_KEY + ns);
+            return gen == null ? 0L : Long.parseLong(gen);
+        });
+    }
+
+    /**
+     * 分批SCAN+UNLINK删除代数小于liveGen的key及其版本戳，每批之间休眠，避免占用Redis
+     */
+    private void sweep(String namespace, long liveGen) {
+        ScanOptions options = ScanOptions.scanOptions().match(namespace + "v*").count(SWEEP_BATCH_SIZE).build();
+        try (Cursor<byte[]> cursor = stringRedisTemplate.executeWithStickyConnection(connection -> connection.scan(options))) {
+            List<String> batch = new ArrayList<>(SWEEP_BATCH_SIZE * 2);
+            while (cursor.hasNext()) {
+                String key = new String(cursor.next(), StandardCharsets.UTF_8);
+                Long gen = generationOf(namespace, key);
+                if (gen == null || gen >= liveGen) {
+                    continue;
+                }
+                batch.add(key);
+                batch.add(CACHE_VERSION_KEY + key);
+                if (batch.size() >= SWEEP_BATCH_SIZE * 2) {
+                    stringRedisTemplate.unlink(batch);
+                    batch.clear();
+                    Thread.sleep(SWEEP_PAUSE_MILLIS);
+                }
+            }
+            if (!batch.isEmpty()) {
+                stringRedisTemplate.unlink(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return: java.lang.Long key中的命名空间代数，不是namespacedKey生成的key时返回null
+     */
+    static Long generationOf(String namespace, String key) {
+        int start = namespace.length() + 1;
+        int end = key.indexOf(':', start);
+        if (!key.startsWith(namespace + "v") || end <= start) {
+            return null;
+        }
+        try {
+            return Long.parseLong(key.substring(start, end));
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     public <T> void set(String key, T value, Long time, TimeUnit unit) {
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
+        setRaw(key, JSONUtil.toJsonStr(value), time, unit);
+    }
+
+    /**
+     * @Param key:
+     * @Param json: 已经序列化好的json
+     * @Param time:
+     * @Param unit:
+     * @return: void
+     * description: 直接写入json字符串，同时写入版本戳
+     */
+    public void setRaw(String key, String json, Long time, TimeUnit unit) {
+        long seconds = unit.toSeconds(time);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.setEx(key, seconds, json);
+            conn.setEx(CACHE_VERSION_KEY + key, seconds, DigestUtil.md5Hex(json));
+            return null;
+        });
+    }
+
+    /**
+     * @Param key:
+     * @return: java.lang.String
+     * description: 直接读取缓存中的json字符串，不做反序列化
+     */
+    public String getRaw(String key) {
+        return stringRedisTemplate.opsForValue().get(key);
+    }
+
+    /**
+     * @Param key:
+     * @return: java.lang.String
+     * description: 查询缓存的版本戳，缓存不存在时返回null
+     */
+    public String getVersion(String key) {
+        return stringRedisTemplate.opsForValue().get(CACHE_VERSION_KEY + key);
+    }
+
+    /**
+     * @Param key:
+     * @return: void
+     * description: 删除缓存及其版本戳
+     */
+    public void delete(String key) {
+        stringRedisTemplate.delete(Arrays.asList(key, CACHE_VERSION_KEY + key));
     }
 
     /**
@@ -57,6 +190,7 @@ public class CacheClient {
         redisData.setData(value);
         redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
         stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        stringRedisTemplate.opsForValue().set(CACHE_VERSION_KEY + key, DigestUtil.md5Hex(JSONUtil.toJsonStr(value)));
     }
 
     /**
@@ -70,7 +204,7 @@ public class CacheClient {
      * description: 设置空值解决缓存穿透问题
      */
     public <R,ID> R queryWithPassThrough(String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit){
-        String key=keyPrefix+id;
+        String key=namespacedKey(keyPrefix,id);
         String json = stringRedisTemplate.opsForValue().get(key);
         if (StrUtil.isNotBlank(json)) {
             // 3.存在，直接返回
@@ -89,6 +223,74 @@ public class CacheClient {
 
     }
 
+    /**
+     * @Param keyPrefix:
+     * @Param ids: 要查询的id，返回结果保持这个顺序
+     * @Param type:
+     * @Param dbFallback: 根据未命中的id批量查询数据库
+     * @Param idGetter: 从查询结果中取id
+     * @Param time:
+     * @Param unit:
+     * @return: java.util.List<R>
+     * description: 批量查询缓存，一次MGET，未命中的一次批量查询数据库并用pipeline写回缓存，不存在的数据不出现在结果中
+     */
+    public <R,ID> List<R> queryBatchWithPassThrough(String keyPrefix, List<ID> ids, Class<R> type, Function<Collection<ID>, List<R>> dbFallback,
+                                                    Function<R, ID> idGetter, Long time, TimeUnit unit){
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> keys = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            keys.add(namespacedKey(keyPrefix, id));
+        }
+        List<String> jsons = stringRedisTemplate.opsForValue().multiGet(keys);
+        Map<ID, R> found = new HashMap<>(ids.size() * 2);
+        List<ID> misses = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String json = jsons == null ? null : jsons.get(i);
+            if (json == null) {
+                misses.add(ids.get(i));
+            } else if (!json.isEmpty()) {
+                found.put(ids.get(i), JSONUtil.toBean(json, type));
+            }
+        }
+        if (!misses.isEmpty()) {
+            List<R> loaded = dbFallback.apply(misses);
+            Map<String, String> toCache = new HashMap<>(loaded.size() * 2);
+            for (R r : loaded) {
+                ID id = idGetter.apply(r);
+                found.put(id, r);
+                toCache.put(namespacedKey(keyPrefix, id), JSONUtil.toJsonStr(r));
+            }
+            // 数据库中也不存在的id缓存空值
+            List<String> nullKeys = new ArrayList<>();
+            for (ID id : misses) {
+                if (!found.containsKey(id)) {
+                    nullKeys.add(namespacedKey(keyPrefix, id));
+                }
+            }
+            long seconds = unit.toSeconds(time);
+            long nullSeconds = TimeUnit.MINUTES.toSeconds(CACHE_NULL_TTL);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                toCache.forEach((key, json) -> {
+                    conn.setEx(key, seconds, json);
+                    conn.setEx(CACHE_VERSION_KEY + key, seconds, DigestUtil.md5Hex(json));
+                });
+                nullKeys.forEach(key -> conn.setEx(key, nullSeconds, ""));
+                return null;
+            });
+        }
+        List<R> result = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            R r = found.get(id);
+            if (r != null) {
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
     /**
      * @Param keyPrefix:
      * @Param id:
@@ -100,7 +302,7 @@ public class CacheClient {
      * description: 利用逻辑过期解决缓存击穿问题
      */
     public <R,ID> R queryWithLocalExpire(String keyPrefix,ID id,Class<R> type,Function<ID,R> dbFallback,Long time,TimeUnit unit){
-        String key=keyPrefix+id;
+        String key=namespacedKey(keyPrefix,id);
         String json = stringRedisTemplate.opsForValue().get(key);
         if (StrUtil.isBlank(json)){
             return null;
@@ -126,7 +328,7 @@ public class CacheClient {
                 }catch (Exception e){
                     throw new RuntimeException(e);
                 }finally {
-                    unLock(key);
+                    unLock(lockKey);
                 }
             });
         }
@@ -145,7 +347,7 @@ public class CacheClient {
      * description: 利用互斥锁解决缓存击穿问题
      */
     public <R,ID> R queryWithMutex(String keyPrefix,ID id,Class<R> type,Function<ID,R> dbFallback,Long time,TimeUnit unit){
-        String key=keyPrefix+id;
+        String key=namespacedKey(keyPrefix,id);
         String shopJson = stringRedisTemplate.opsForValue().get(key);
         if (StrUtil.isNotBlank(shopJson)){
             return JSONUtil.toBean(shopJson,type);
@@ -0,0 +1,208 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.IdUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 计数器增量的本地聚合
+ *              热点计数每次变化只累加到JVM内的LongAdder，按 (增量hash, id) 区分；定时把累计值汇总成一批，
+ *              先写入本地日志文件并刷盘，再用一次Lua调用HINCRBY到对应的增量hash（见RedisDeltaCounter），成功后删除日志；
+ *              写入Redis失败或进程重启后，按顺序重放未删除的日志，批次标记保证同一批不会重复写入。
+ *              进程崩溃时最多丢失最近一个聚合周期内的增量
+ */
+@Slf4j
+@Component
+public class CounterAggregator {
+
+    private static final DefaultRedisScript<Long> APPLY_SCRIPT;
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    static {
+        APPLY_SCRIPT = new DefaultRedisScript<>();
+        APPLY_SCRIPT.setLocation(new ClassPathResource("counter_apply.lua"));
+        APPLY_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Path journalDir;
+    private final AtomicReference<Map<CounterKey, LongAdder>> counters = new AtomicReference<>(new ConcurrentHashMap<>());
+    /**
+     * 上一轮换下来的计数器，换下时可能还有线程正在累加，下一轮再汇总一次
+     */
+    private Map<CounterKey, LongAdder> retired = Collections.emptyMap();
+
+    public CounterAggregator(StringRedisTemplate stringRedisTemplate,
+                             @Value("${hmdp.counter.journal-dir:counter-journal}") String journalDir) throws IOException {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.journalDir = Files.createDirectories(Paths.get(journalDir));
+    }
+
+    /**
+     * @Param deltaKey: 增量hash
+     * @Param id: 字段
+     * @Param delta: 增量
+     * @return: void
+     */
+    public void add(String deltaKey, Long id, long delta) {
+        counters.get().computeIfAbsent(new CounterKey(deltaKey, id), k -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * 汇总本地累计的增量，写入日志后同步到Redis
+     */
+    @Scheduled(fixedDelayString = "${hmdp.counter.drain-millis:200}")
+    @PreDestroy
+    public synchronized void drain() {
+        Map<CounterKey, LongAdder> current = counters.getAndSet(new ConcurrentHashMap<>());
+        Map<CounterKey, Long> deltas = new HashMap<>();
+        collect(retired, deltas);
+        collect(current, deltas);
+        retired = current;
+        if (!deltas.isEmpty()) {
+            try {
+                writeJournal(deltas);
+            } catch (IOException e) {
+                log.error("计数日志写入失败，{}条增量留到下次处理", deltas.size(), e);
+                deltas.forEach((key, delta) -> add(key.deltaKey, key.id, delta));
+                return;
+            }
+        }
+        replay();
+    }
+
+    private static void collect(Map<CounterKey, LongAdder> source, Map<CounterKey, Long> target) {
+        source.forEach((key, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                target.merge(key, delta, Long::sum);
+            }
+        });
+    }
+
+    /**
+     * 每批最多COUNTER_APPLY_BATCH条增量，一批一个日志文件，先写临时文件刷盘后再改名，避免重放写了一半的文件
+     */
+    private void writeJournal(Map<CounterKey, Long> deltas) throws IOException {
+        List<String> lines = new ArrayList<>(Math.min(deltas.size(), COUNTER_APPLY_BATCH));
+        for (Map.Entry<CounterKey, Long> entry : deltas.entrySet()) {
+            lines.add(entry.getKey().deltaKey + "\t" + entry.getKey().id + "\t" + entry.getValue());
+            if (lines.size() >= COUNTER_APPLY_BATCH) {
+                writeBatch(lines);
+                lines.clear();
+            }
+        }
+        if (!lines.isEmpty()) {
+            writeBatch(lines);
+        }
+    }
+
+    private void writeBatch(List<String> lines) throws IOException {
+        // 文件名以时间开头，重放时按写入顺序处理
+        String name = System.currentTimeMillis() + "-" + IdUtil.fastSimpleUUID();
+        Path tmp = journalDir.resolve(name + TMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, journalDir.resolve(name + JOURNAL_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 按顺序把日志写入Redis，遇到失败就停止，下次从失败的批次继续
+     */
+    private void replay() {
+        List<Path> journals;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            journals = files.filter(path -> path.getFileName().toString().endsWith(JOURNAL_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            log.error("读取计数日志目录失败", e);
+            return;
+        }
+        for (Path journal : journals) {
+            try {
+                apply(journal);
+                Files.delete(journal);
+            } catch (Exception e) {
+                log.error("计数日志 {} 写入Redis失败，下次重试", journal.getFileName(), e);
+                return;
+            }
+        }
+    }
+
+    private void apply(Path journal) throws IOException {
+        String name = journal.getFileName().toString();
+        List<String> keys = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        keys.add(COUNTER_BATCH_KEY + name.substring(0, name.length() - JOURNAL_SUFFIX.length()));
+        args.add(String.valueOf(TimeUnit.DAYS.toSeconds(COUNTER_BATCH_TTL)));
+        for (String line : Files.readAllLines(journal, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t");
+            if (parts.length != 3) {
+                continue;
+            }
+            keys.add(parts[0]);
+            args.add(parts[1]);
+            args.add(parts[2]);
+        }
+        if (keys.size() > 1) {
+            stringRedisTemplate.execute(APPLY_SCRIPT, keys, args.toArray());
+        }
+    }
+
+    private static class CounterKey {
+        final String deltaKey;
+        final Long id;
+
+        CounterKey(String deltaKey, Long id) {
+            this.deltaKey = deltaKey;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CounterKey)) {
+                return false;
+            }
+            CounterKey that = (CounterKey) o;
+            return deltaKey.equals(that.deltaKey) && id.equals(that.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * deltaKey.hashCode() + id.hashCode();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.hmdp.utils;
+
+import com.hmdp.mapper.CounterBatchMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static com.hmdp.utils.RedisConstants.COUNTER_BATCH_KEEP_DAYS;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 计数批次写回数据库的幂等记录
+ *              批次id和计数的UPDATE在同一个事务中写入tb_counter_batch，
+ *              写回成功但Redis中的批次未删除（进程崩溃、删除失败）时，重试会发现批次已存在并跳过
+ */
+@Slf4j
+@Component
+public class CounterBatchLog {
+
+    private final CounterBatchMapper counterBatchMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public CounterBatchLog(CounterBatchMapper counterBatchMapper, TransactionTemplate transactionTemplate) {
+        this.counterBatchMapper = counterBatchMapper;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * @Param batchId: 批次id，全局唯一
+     * @Param writer: 写回数据库
+     * @return: boolean 是否执行了writer，批次已经写回过时返回false
+     */
+    public boolean applyOnce(String batchId, Runnable writer) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (counterBatchMapper.insertIgnore(batchId) == 0) {
+                log.warn("计数批次 {} 已经写回过，跳过", batchId);
+                return false;
+            }
+            writer.run();
+            return true;
+        }));
+    }
+
+    /**
+     * 批次只在写回后短时间内可能重试，定期清理旧记录
+     */
+    @Scheduled(cron = "${hmdp.counter.batch-purge-cron:0 30 4 * * ?}")
+    public void purge() {
+        int count = counterBatchMapper.deleteBefore(LocalDateTime.now().minusDays(COUNTER_BATCH_KEEP_DAYS));
+        log.info("清理计数批次记录：{}条", count);
+    }
+}
@@ -0,0 +1,98 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 条件GET拦截器
+ *              根据CacheClient中的版本戳生成强ETag，客户端携带的If-None-Match与之相同时直接返回304，
+ *              不查询、不反序列化缓存内容；同时按接口设置Cache-Control；
+ *              这里设置的ETag只用于比较，响应内容来自近端缓存时由RawResultCache.writeWithEtag按实际内容覆盖
+ */
+public class ETagInterceptor implements HandlerInterceptor {
+
+    private final CacheClient cacheClient;
+    private final SnapshotRegistry snapshotRegistry;
+
+    public ETagInterceptor(CacheClient cacheClient, SnapshotRegistry snapshotRegistry) {
+        this.cacheClient = cacheClient;
+        this.snapshotRegistry = snapshotRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod) || !"GET".equals(request.getMethod())) {
+            return true;
+        }
+        HttpCacheable cacheable = ((HandlerMethod) handler).getMethodAnnotation(HttpCacheable.class);
+        if (cacheable == null) {
+            return true;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl(cacheable.maxAge()));
+        String etag = cacheable.snapshot() ? snapshotRegistry.get(cacheable.key()).getEtag() : cacheEtag(request, cacheable);
+        if (etag == null) {
+            return true;
+        }
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+        return true;
+    }
+
+    private String cacheEtag(HttpServletRequest request, HttpCacheable cacheable) {
+        String key = resolveKey(request, cacheable);
+        if (key == null) {
+            return null;
+        }
+        String version = cacheClient.getVersion(key);
+        // 缓存尚未建立时不返回ETag，由业务查询重建缓存
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    @SuppressWarnings("unchecked")
+    private String resolveKey(HttpServletRequest request, HttpCacheable cacheable) {
+        if (StrUtil.isBlank(cacheable.pathVariable())) {
+            return cacheable.key();
+        }
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String value = variables == null ? null : variables.get(cacheable.pathVariable());
+        if (StrUtil.isBlank(value)) {
+            return null;
+        }
+        return cacheable.namespaced() ? cacheClient.namespacedKey(cacheable.key(), value) : cacheable.key() + value;
+    }
+
+    private String cacheControl(long maxAge) {
+        return maxAge > 0 ? "max-age=" + maxAge + ", must-revalidate" : "no-cache";
+    }
+
+    /**
+     * If-None-Match可能是 * 或者逗号分隔的多个ETag，比较时忽略弱标记W/
+     */
+    private boolean matches(String ifNoneMatch, String etag) {
+        if (StrUtil.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || etag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
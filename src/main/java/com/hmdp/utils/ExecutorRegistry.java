@@ -0,0 +1,127 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.ExecutorProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 统一管理项目中的线程池
+ *              线程池按名字在配置中声明（见ExecutorProperties），按需创建，
+ *              提供运行统计，并在应用关闭时等待已提交的任务执行完毕
+ */
+@Slf4j
+@Component
+public class ExecutorRegistry {
+
+    private final ExecutorProperties properties;
+    private final Map<String, MonitoredThreadPoolExecutor> executors = new ConcurrentHashMap<>();
+
+    public ExecutorRegistry(ExecutorProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @Param name: 线程池名字
+     * @return: java.util.concurrent.ExecutorService
+     * description: 获取指定名字的线程池，未声明的名字直接报错，避免随手创建无人管理的线程池
+     */
+    public ExecutorService get(String name) {
+        return executors.computeIfAbsent(name, this::create);
+    }
+
+    /**
+     * @return: java.util.Map<java.lang.String,java.util.Map<java.lang.String,java.lang.Object>>
+     * description: 所有已创建线程池的统计信息
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        executors.forEach((name, executor) -> stats.put(name, executor.stats()));
+        return stats;
+    }
+
+    private MonitoredThreadPoolExecutor create(String name) {
+        ExecutorProperties.Pool pool = properties.getPools().get(name);
+        if (pool == null) {
+            throw new IllegalArgumentException("未声明的线程池：" + name);
+        }
+        BlockingQueue<Runnable> queue = pool.getQueueCapacity() > 0
+                ? new LinkedBlockingDeque<>(pool.getQueueCapacity())
+                : new SynchronousQueue<>();
+        MonitoredThreadPoolExecutor executor = new MonitoredThreadPoolExecutor(
+                name,
+                pool.getCoreSize(),
+                Math.max(pool.getCoreSize(), pool.getMaxSize()),
+                pool.getKeepAliveSeconds(),
+                queue,
+                threadFactory(name, pool.isVirtual()),
+                rejectHandler(pool.getRejectPolicy()));
+        log.info("创建线程池 {}：{}", name, pool);
+        return executor;
+    }
+
+    private RejectedExecutionHandler rejectHandler(ExecutorProperties.RejectPolicy policy) {
+        switch (policy) {
+            case CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            case DISCARD:
+                return new ThreadPoolExecutor.DiscardPolicy();
+            case DISCARD_OLDEST:
+                return new ThreadPoolExecutor.DiscardOldestPolicy();
+            default:
+                return new ThreadPoolExecutor.AbortPolicy();
+        }
+    }
+
+    private ThreadFactory threadFactory(String name, boolean virtual) {
+        if (virtual) {
+            ThreadFactory factory = virtualThreadFactory(name);
+            if (factory != null) {
+                return factory;
+            }
+            log.warn("当前JDK不支持虚拟线程，线程池 {} 使用平台线程", name);
+        }
+        AtomicInteger seq = new AtomicInteger();
+        return r -> new Thread(r, name + "-" + seq.incrementAndGet());
+    }
+
+    /**
+     * 项目按JDK8编译，通过反射调用 Thread.ofVirtual()，运行在JDK21及以上时才生效
+     */
+    private ThreadFactory virtualThreadFactory(String name) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(properties.getAwaitTerminationSeconds());
+        for (MonitoredThreadPoolExecutor executor : executors.values()) {
+            try {
+                long remaining = deadline - System.nanoTime();
+                if (!executor.awaitTermination(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) {
+                    log.warn("线程池 {} 未能在限定时间内结束，剩余任务 {} 个", executor.getName(), executor.shutdownNow().size());
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 标记可被客户端缓存的查询接口，由ETagInterceptor处理
+ *              接口返回的数据对应CacheClient中的缓存key = key + 路径变量pathVariable的值
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface HttpCacheable {
+
+    /**
+     * 缓存key，或者缓存key的前缀
+     */
+    String key();
+
+    /**
+     * 拼接在key后面的路径变量名，为空时直接使用key
+     */
+    String pathVariable() default "";
+
+    /**
+     * key是否是CacheClient的命名空间，为true时按 CacheClient.namespacedKey(key, 路径变量) 生成缓存key
+     */
+    boolean namespaced() default false;
+
+    /**
+     * key是否是SnapshotRegistry中的快照名，为true时使用快照自带的ETag，不访问Redis
+     */
+    boolean snapshot() default false;
+
+    /**
+     * Cache-Control的max-age（秒），为0时要求客户端每次都重新验证
+     */
+    long maxAge() default 0;
+}
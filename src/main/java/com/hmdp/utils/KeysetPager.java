@@ -0,0 +1,93 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.hmdp.dto.CursorResult;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 基于游标（keyset）的分页查询
+ *              游标中保存上一页最后一条记录的排序值和id，下一页用 WHERE (sort, id) 在游标之后 代替 OFFSET，
+ *              也不再执行COUNT，翻到多深的页耗时都一样；要求 (过滤条件, 排序字段, id) 上有索引
+ */
+public class KeysetPager {
+
+    private static final String ID_COLUMN = "id";
+
+    /**
+     * @Param mapper:
+     * @Param wrapper: 过滤条件，不需要设置排序
+     * @Param sortColumn: 排序字段，为id时只按id排序
+     * @Param sortGetter: 从实体中取排序值
+     * @Param idGetter: 从实体中取id
+     * @Param cursor: 上一页返回的游标，第一页传空字符串
+     * @Param size: 每页数量
+     * @Param desc: 是否倒序
+     * @return: com.hmdp.dto.CursorResult<T> 游标格式错误时返回null
+     * description: 查询游标之后的一页数据
+     */
+    public static <T> CursorResult<T> page(BaseMapper<T> mapper, QueryWrapper<T> wrapper, String sortColumn,
+                                        Function<T, ? extends Number> sortGetter, Function<T, Long> idGetter,
+                                        String cursor, int size, boolean desc) {
+        boolean byId = ID_COLUMN.equals(sortColumn);
+        long[] position = decode(cursor);
+        if (position == null && StrUtil.isNotBlank(cursor)) {
+            return null;
+        }
+        if (position != null) {
+            long sortValue = position[0];
+            long id = position[1];
+            if (byId) {
+                wrapper.func(w -> seek(w, ID_COLUMN, id, desc));
+            } else {
+                // (sort < ?) OR (sort = ? AND id < ?)，正序时比较方向相反
+                wrapper.and(w -> seek(w, sortColumn, sortValue, desc)
+                        .or(o -> seek(o.eq(sortColumn, sortValue), ID_COLUMN, id, desc)));
+            }
+        }
+        if (byId) {
+            wrapper.orderBy(true, !desc, ID_COLUMN);
+        } else {
+            wrapper.orderBy(true, !desc, sortColumn, ID_COLUMN);
+        }
+        // 多查一条判断是否还有下一页
+        wrapper.last("LIMIT " + (size + 1));
+        List<T> records = mapper.selectList(wrapper);
+        if (records.size() <= size) {
+            return new CursorResult<>(records, null);
+        }
+        records = records.subList(0, size);
+        T last = records.get(size - 1);
+        Number sortValue = byId ? idGetter.apply(last) : sortGetter.apply(last);
+        return new CursorResult<>(records, encode(sortValue == null ? 0 : sortValue.longValue(), idGetter.apply(last)));
+    }
+
+    private static <T> QueryWrapper<T> seek(QueryWrapper<T> wrapper, String column, long value, boolean desc) {
+        return desc ? wrapper.lt(column, value) : wrapper.gt(column, value);
+    }
+
+    static String encode(long sortValue, long id) {
+        return Base64.encodeUrlSafe(sortValue + ":" + id);
+    }
+
+    /**
+     * 游标为空或格式错误时返回null，由page区分两种情况
+     */
+    static long[] decode(String cursor) {
+        if (StrUtil.isBlank(cursor)) {
+            return null;
+        }
+        try {
+            String[] parts = Base64.decodeStr(cursor).split(":");
+            return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1])};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.hmdp.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 带统计信息的线程池
+ *              记录拒绝次数、任务排队耗时和执行耗时，供ExecutorRegistry汇总输出
+ */
+public class MonitoredThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final String name;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder finished = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    public MonitoredThreadPoolExecutor(String name, int coreSize, int maxSize, long keepAliveSeconds,
+                                       BlockingQueue<Runnable> queue, ThreadFactory threadFactory,
+                                       RejectedExecutionHandler handler) {
+        super(coreSize, maxSize, keepAliveSeconds, TimeUnit.SECONDS, queue, threadFactory, handler);
+        this.name = name;
+        //包装拒绝策略，统计被拒绝（或被丢弃）的任务数
+        setRejectedExecutionHandler((r, executor) -> {
+            rejected.increment();
+            handler.rejectedExecution(r, executor);
+        });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedTask(command));
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        if (r instanceof TimedTask) {
+            TimedTask task = (TimedTask) r;
+            task.startNanos = System.nanoTime();
+            waitNanos.add(task.startNanos - task.submitNanos);
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        if (r instanceof TimedTask) {
+            long cost = System.nanoTime() - ((TimedTask) r).startNanos;
+            runNanos.add(cost);
+            maxRunNanos.accumulateAndGet(cost, Math::max);
+            finished.increment();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return: java.util.Map<java.lang.String,java.lang.Object>
+     * description: 当前线程池的统计快照
+     */
+    public Map<String, Object> stats() {
+        long count = finished.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("poolSize", getPoolSize());
+        stats.put("activeThreads", getActiveCount());
+        stats.put("largestPoolSize", getLargestPoolSize());
+        stats.put("queueSize", getQueue().size());
+        stats.put("queueRemaining", getQueue().remainingCapacity());
+        stats.put("completedTasks", count);
+        stats.put("rejectedTasks", rejected.sum());
+        stats.put("avgWaitMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos.sum() / count));
+        stats.put("avgRunMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(runNanos.sum() / count));
+        stats.put("maxRunMillis", TimeUnit.NANOSECONDS.toMillis(maxRunNanos.get()));
+        return stats;
+    }
+
+    private static class TimedTask implements Runnable {
+        private final Runnable delegate;
+        private final long submitNanos = System.nanoTime();
+        private long startNanos;
+
+        TimedTask(Runnable delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            delegate.run();
+        }
+    }
+}
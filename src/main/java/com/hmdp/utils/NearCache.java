@@ -0,0 +1,87 @@
+package com.hmdp.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 进程内的近端缓存，放在Redis前面，挡住热点key的网络往返
+ *              只做最简单的TTL过期和容量限制，超出容量时先清理过期数据，仍然超出则整体清空
+ */
+public class NearCache<K, V> {
+
+    private final Map<K, Entry<V>> map = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxSize;
+
+    public NearCache(long ttl, TimeUnit unit, int maxSize) {
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxSize = maxSize;
+    }
+
+    public V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt - System.nanoTime() < 0) {
+            map.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * @Param key:
+     * @Param loader: 未命中时的加载函数，返回null时不缓存
+     * @return: V
+     * description: 查询缓存，未命中时加载并放入缓存
+     */
+    public V get(K key, Function<K, V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        if (map.size() >= maxSize) {
+            evict();
+        }
+        map.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+    }
+
+    public void remove(K key) {
+        map.remove(key);
+    }
+
+    public void clear() {
+        map.clear();
+    }
+
+    private void evict() {
+        long now = System.nanoTime();
+        map.entrySet().removeIf(e -> e.getValue().expireAt - now < 0);
+        if (map.size() >= maxSize) {
+            map.clear();
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expireAt;
+
+        Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.hmdp.utils;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.toolkit.ParameterUtils;
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.PAGE_COUNT_KEY;
+import static com.hmdp.utils.RedisConstants.PAGE_COUNT_TTL;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 按策略执行COUNT的分页插件
+ *              策略可以按mapper（例如 com.hmdp.mapper.ShopMapper）或者按查询（例如 com.hmdp.mapper.ShopMapper.selectPage）配置，
+ *              查询级别的配置优先，都没有配置时使用EXACT，和原来的分页插件行为一致
+ */
+@Slf4j
+public class PageCountInterceptor extends PaginationInnerInterceptor {
+
+    private final Map<String, PageCountPolicy> policies;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ExecutorService countExecutor;
+    /**
+     * 正在后台执行的COUNT，避免同一个查询重复提交
+     */
+    private final Set<String> counting = ConcurrentHashMap.newKeySet();
+
+    public PageCountInterceptor(DbType dbType, Map<String, PageCountPolicy> policies,
+                                StringRedisTemplate stringRedisTemplate, ExecutorService countExecutor) {
+        super(dbType);
+        this.policies = policies;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.countExecutor = countExecutor;
+    }
+
+    @Override
+    public boolean willDoQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                               ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
+        IPage<?> page = ParameterUtils.findPage(parameter).orElse(null);
+        if (!(page instanceof Page) || page.getSize() < 0 || !page.searchCount()) {
+            return super.willDoQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
+        }
+        Page<?> p = (Page<?>) page;
+        PageCountPolicy policy = policyOf(ms.getId());
+        if (policy == PageCountPolicy.EXACT) {
+            return super.willDoQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
+        }
+        if (policy == PageCountPolicy.SKIP) {
+            p.setSearchCount(false);
+            return true;
+        }
+        // APPROXIMATE 和 ASYNC 都先读缓存
+        String key = PAGE_COUNT_KEY + ms.getId() + ":" + fingerprint(ms, parameter, boundSql);
+        String cached = stringRedisTemplate.opsForValue().get(key);
+        if (cached != null) {
+            p.setTotal(Long.parseLong(cached));
+            p.setSearchCount(false);
+            return true;
+        }
+        if (policy == PageCountPolicy.APPROXIMATE) {
+            boolean goOn = super.willDoQuery(executor, ms, parameter, rowBounds, resultHandler, boundSql);
+            stringRedisTemplate.opsForValue().set(key, String.valueOf(p.getTotal()), PAGE_COUNT_TTL, TimeUnit.MINUTES);
+            return goOn;
+        }
+        // ASYNC：本次不等待COUNT
+        p.setSearchCount(false);
+        if (counting.add(key)) {
+            String countSql = autoCountSql(p.optimizeCountSql(), boundSql.getSql());
+            try {
+                countExecutor.execute(() -> {
+                    try {
+                        long total = count(ms, parameter, boundSql, countSql);
+                        stringRedisTemplate.opsForValue().set(key, String.valueOf(total), PAGE_COUNT_TTL, TimeUnit.MINUTES);
+                    } catch (Exception e) {
+                        log.error("异步COUNT失败：{}", ms.getId(), e);
+                    } finally {
+                        counting.remove(key);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                counting.remove(key);
+            }
+        }
+        return true;
+    }
+
+    private PageCountPolicy policyOf(String statementId) {
+        PageCountPolicy policy = policies.get(statementId);
+        if (policy == null) {
+            policy = policies.get(statementId.substring(0, statementId.lastIndexOf('.')));
+        }
+        return policy == null ? PageCountPolicy.EXACT : policy;
+    }
+
+    /**
+     * 使用独立连接执行COUNT，参数绑定复用MyBatis的ParameterHandler
+     */
+    private long count(MappedStatement ms, Object parameter, BoundSql boundSql, String countSql) throws SQLException {
+        Configuration configuration = ms.getConfiguration();
+        BoundSql countBoundSql = new BoundSql(configuration, countSql, boundSql.getParameterMappings(), parameter);
+        PluginUtils.mpBoundSql(boundSql).additionalParameters().forEach(countBoundSql::setAdditionalParameter);
+        try (Connection connection = configuration.getEnvironment().getDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement(countSql)) {
+            configuration.newParameterHandler(ms, parameter, countBoundSql).setParameters(statement);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * SQL和参数值的摘要，作为缓存key的一部分
+     */
+    private String fingerprint(MappedStatement ms, Object parameter, BoundSql boundSql) {
+        StringBuilder sb = new StringBuilder(boundSql.getSql());
+        MetaObject metaObject = parameter == null ? null : ms.getConfiguration().newMetaObject(parameter);
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            String property = mapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (metaObject == null) {
+                value = null;
+            } else {
+                value = metaObject.getValue(property);
+            }
+            sb.append('|').append(value);
+        }
+        return DigestUtil.md5Hex(sb.toString());
+    }
+}
@@ -0,0 +1,25 @@
+package com.hmdp.utils;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 分页查询时COUNT语句的执行策略
+ */
+public enum PageCountPolicy {
+    /**
+     * 每次都同步执行COUNT，分页插件的默认行为
+     */
+    EXACT,
+    /**
+     * 不执行COUNT，total为0，适用于客户端不关心总数的列表
+     */
+    SKIP,
+    /**
+     * 使用Redis中缓存的总数，缓存过期后同步执行一次COUNT并写回缓存
+     */
+    APPROXIMATE,
+    /**
+     * 使用Redis中缓存的总数，缓存不存在时本次不返回总数，由后台线程执行COUNT并写入缓存
+     */
+    ASYNC
+}
@@ -0,0 +1,101 @@
+package com.hmdp.utils;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdp.dto.Result;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 缓存渲染好的Result响应体
+ *              Redis和近端缓存中保存的是完整的Result json，命中时直接写入响应输出流，
+ *              不需要反序列化成对象再由Jackson序列化一遍，适用于读多写少的接口；
+ *              近端缓存中的内容可能比Redis版本戳旧几秒，响应的ETag要用writeWithEtag按实际返回的内容生成
+ */
+@Component
+public class RawResultCache {
+
+    private static final long NEAR_CACHE_TTL_SECONDS = 5L;
+    private static final int NEAR_CACHE_MAX_SIZE = 1024;
+
+    private final CacheClient cacheClient;
+    private final ObjectMapper objectMapper;
+    private final NearCache<String, byte[]> nearCache = new NearCache<>(NEAR_CACHE_TTL_SECONDS, TimeUnit.SECONDS, NEAR_CACHE_MAX_SIZE);
+
+    public RawResultCache(CacheClient cacheClient, ObjectMapper objectMapper) {
+        this.cacheClient = cacheClient;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @Param key: 缓存key
+     * @Param loader: 缓存未命中时生成Result
+     * @Param time: Redis缓存时间
+     * @Param unit:
+     * @return: byte[] 渲染好的Result json
+     * description: 依次查询近端缓存、Redis，都未命中时调用loader并写回两级缓存
+     */
+    public byte[] get(String key, Supplier<Result> loader, Long time, TimeUnit unit) {
+        return nearCache.get(key, k -> {
+            String json = cacheClient.getRaw(k);
+            if (json == null) {
+                json = render(loader.get());
+                cacheClient.setRaw(k, json, time, unit);
+            }
+            return json.getBytes(StandardCharsets.UTF_8);
+        });
+    }
+
+    /**
+     * @Param key:
+     * @return: void
+     * description: 删除本机近端缓存和Redis缓存
+     */
+    public void evict(String key) {
+        nearCache.remove(key);
+        cacheClient.delete(key);
+    }
+
+    /**
+     * @Param response:
+     * @Param body: 渲染好的json
+     * @return: void
+     * description: 直接把json写入响应
+     */
+    public static void write(HttpServletResponse response, byte[] body) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    /**
+     * @Param response:
+     * @Param body: 渲染好的json
+     * @return: void
+     * description: 按实际返回的内容生成ETag后写入响应，覆盖ETagInterceptor按Redis版本戳设置的ETag，
+     *              与CacheClient的版本戳算法相同，内容一致时两者相等
+     */
+    public static void writeWithEtag(HttpServletResponse response, byte[] body) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, "\"" + DigestUtil.md5Hex(body) + "\"");
+        write(response, body);
+    }
+
+    private String render(Result result) {
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 进程内店铺索引的公共骨架
+ *              启动后在index-loader线程池中从tb_shop全量构建，构建完成后在写锁内整体替换，之后根据ShopChangedEvent增量更新；
+ *              构建期间收到的变更先应用到旧索引，替换后再在新索引上重放，不会因为替换而丢失
+ * @param <S> 构建好的索引数据，在写锁外构建，替换时整体交给子类
+ */
+public abstract class RebuildableShopIndex<S> {
+
+    protected final ShopMapper shopMapper;
+    private final ExecutorRegistry executorRegistry;
+    /**
+     * 子类的查询加读锁，rebuild、apply由这里加写锁
+     */
+    protected final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * 重建期间收到的店铺变更，不为null表示正在重建
+     */
+    private List<Shop> pendingChanges;
+    private volatile boolean ready;
+
+    protected RebuildableShopIndex(ShopMapper shopMapper, ExecutorRegistry executorRegistry) {
+        this.shopMapper = shopMapper;
+        this.executorRegistry = executorRegistry;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        executorRegistry.get("index-loader").execute(this::rebuild);
+    }
+
+    /**
+     * @return: void
+     * description: 从数据库全量重建索引，构建完成后整体替换；构建期间收到的店铺变更在替换后重放
+     */
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            S state = build(shopMapper.selectList(query()));
+            lock.writeLock().lock();
+            try {
+                swap(state);
+                pendingChanges.forEach(this::apply);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            ready = true;
+            onRebuilt(state);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                pendingChanges = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener
+    public void onShopChanged(ShopChangedEvent event) {
+        Shop shop = event.getAfter();
+        lock.writeLock().lock();
+        try {
+            apply(shop);
+            if (pendingChanges != null) {
+                pendingChanges.add(shop);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return: com.baomidou.mybatisplus.core.conditions.query.QueryWrapper<com.hmdp.entity.Shop> 全量构建时查询的字段
+     */
+    protected abstract QueryWrapper<Shop> query();
+
+    /**
+     * @Param shops: 数据库中的全部店铺
+     * @return: S 构建好的索引数据，不加锁执行
+     */
+    protected abstract S build(List<Shop> shops);
+
+    /**
+     * 用新构建的索引数据替换当前数据，在写锁内调用
+     */
+    protected abstract void swap(S state);
+
+    /**
+     * 把一个店铺的最新数据应用到当前索引（先删除旧数据再加入），在写锁内调用
+     */
+    protected abstract void apply(Shop shop);
+
+    /**
+     * 重建完成后调用，用于记录日志
+     */
+    protected abstract void onRebuilt(S state);
+}
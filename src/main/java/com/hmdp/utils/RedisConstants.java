@@ -5,19 +5,87 @@ public class RedisConstants {
     public static final Long LOGIN_CODE_TTL = 2L;
     public static final String LOGIN_USER_KEY = "login:token:";
     public static final Long LOGIN_USER_TTL = 30L;
+    public static final Long LOGIN_USER_LOCAL_TTL = 30L;
+    public static final int LOGIN_USER_LOCAL_MAX_SIZE = 100000;
+    public static final double LOGIN_USER_REFRESH_RATIO = 0.2;
+    public static final String SESSION_INVALIDATED_CHANNEL = "session:invalidated";
+    public static final String USER_SUMMARY_KEY = "cache:user:summary:";
+    public static final Long USER_SUMMARY_TTL = 30L;
+    public static final Long USER_SUMMARY_LOCAL_TTL = 60L;
 
     public static final Long CACHE_NULL_TTL = 2L;
 
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
     public static final String CACHE_SHOPTYPE_KEY = "cache:shoptype:";
+    public static final String CACHE_VERSION_KEY = "cache:ver:";
+    public static final String NAMESPACE_GEN_KEY = "cache:ns:";
+    public static final Long NAMESPACE_GEN_LOCAL_TTL = 1000L;
+    public static final int SWEEP_BATCH_SIZE = 500;
+    public static final Long SWEEP_PAUSE_MILLIS = 50L;
+
+    public static final Long CACHE_VOUCHER_TTL = 1L;
+    public static final String CACHE_VOUCHER_RESULT_KEY = "cache:result:voucher:shop:";
+    public static final String CACHE_VOUCHER_STOCK_EVICT_KEY = "cache:result:voucher:evicted:";
+    public static final Long CACHE_VOUCHER_STOCK_EVICT_SECONDS = 5L;
+
+    public static final String SNAPSHOT_VERSION_KEY = "snapshot:ver:";
+    public static final String SNAPSHOT_CHANNEL = "snapshot:changed";
+    public static final String SNAPSHOT_SHOP_TYPE = "shop-type";
+
+    public static final String PAGE_COUNT_KEY = "page:count:";
+    public static final Long PAGE_COUNT_TTL = 10L;
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
+    public static final String BLOG_LIKED_DELTA_KEY = "blog:liked:delta";
+    public static final String BLOG_COMMENTS_DELTA_KEY = "blog:comments:delta";
+    public static final String COMMENT_LIKED_KEY = "comment:liked:";
+    public static final String COMMENT_LIKED_DELTA_KEY = "comment:liked:delta";
+    public static final String BLOG_HOT_KEY = "blog:hot";
+    public static final String BLOG_HOT_DIRTY_KEY = "blog:hot:dirty";
+    public static final String BLOG_HOT_READY_KEY = "blog:hot:ready";
+    public static final String FOLLOW_KEY = "follows:";
+    public static final Long FOLLOW_TTL = 30L;
+    public static final Long FOLLOW_LOCAL_TTL = 10L;
+    public static final String FOLLOW_COUNT_KEY = "follow:count:";
+    public static final Long FOLLOW_COUNT_TTL = 24L;
+    public static final String FOLLOW_COUNT_FILL_KEY = "follow:count:fill:";
+    public static final Long FOLLOW_COUNT_FILL_TTL = 10L;
     public static final String FEED_KEY = "feed:";
+    public static final String FEED_OUTBOX_KEY = "feed:out:";
+    public static final String FEED_BIG_KEY = "feed:big";
+    public static final Long FEED_BIG_LOCAL_TTL = 60L;
+    public static final int FEED_PUSH_LIMIT = 5000;
+    public static final int FEED_FANOUT_BATCH = 500;
+    public static final int FEED_BOX_SIZE = 1000;
     public static final String SHOP_GEO_KEY = "shop:geo:";
+    public static final Long SHOP_GEO_RADIUS_METERS = 5000L;
+    public static final int SHOP_GEO_LOAD_BATCH = 1000;
+    public static final String SHOP_TYPE_LIST_KEY = "shop:type:";
+    public static final String SHOP_TYPE_LIST_READY_KEY = "shop:type:ready";
+    public static final int SHOP_TYPE_LIST_LOAD_BATCH = 1000;
+    public static final String RANK_SOLD_KEY = "rank:sold:";
+    public static final String RANK_SCORE_KEY = "rank:score:";
+    public static final Long RANK_DAY_TTL = 2L;
+    public static final Long RANK_WEEK_TTL = 14L;
+    public static final int RANK_KEEP_SIZE = 1000;
+    public static final int RANK_MAX_SIZE = 100;
     public static final String USER_SIGN_KEY = "sign:";
+    public static final String USER_SIGN_HISTORY_KEY = "sign-history:";
+    public static final String UV_KEY = "uv:";
+    public static final String UV_ACTIVE_KEY = "uv:active:";
+    public static final Long UV_DAY_TTL = 40L;
+    public static final Long UV_ROLLUP_TTL = 400L;
+    public static final int UV_BUFFER_LIMIT = 100000;
+    public static final int UV_ROLLUP_BATCH = 500;
+    public static final String SHOP_SOLD_DELTA_KEY = "shop:sold:delta";
+    public static final String COUNTER_BATCH_KEY = "counter:batch:";
+    public static final Long COUNTER_BATCH_TTL = 1L;
+    public static final int COUNTER_APPLY_BATCH = 500;
+    public static final long COUNTER_FLUSH_LOCK_TTL = 60L;
+    public static final int COUNTER_BATCH_KEEP_DAYS = 7;
 }
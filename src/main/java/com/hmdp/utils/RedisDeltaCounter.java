@@ -0,0 +1,161 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.IdUtil;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import static com.hmdp.utils.RedisConstants.COUNTER_FLUSH_LOCK_TTL;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 计数器增量的写回缓冲
+ *              每次变化只在Redis hash {deltaKey} 中HINCRBY，定时调用flush批量写回数据库：
+ *              先获取 lock:{deltaKey} 锁，同一时间只有一个节点写回；再用脚本把hash重命名为 {deltaKey}:flushing 并分配批次id，
+ *              之后的增量写入新的hash；批次id和UPDATE在同一个事务中记录（见CounterBatchLog），
+ *              写回后删除flushing前崩溃或删除失败时，下次认领到同一批次并跳过数据库写入；
+ *              读取增量时需要同时读取两个hash，否则写回期间计数会暂时变小；
+ *              传入CounterAggregator时，incr先在本地聚合，由CounterAggregator定时批量写入增量hash
+ */
+public class RedisDeltaCounter {
+
+    private static final String FLUSHING_SUFFIX = ":flushing";
+    /**
+     * flushing hash中保存批次id的字段，不是数字，不会与计数的id冲突
+     */
+    private static final String BATCH_FIELD = "#batch";
+    private static final DefaultRedisScript<String> CLAIM_SCRIPT;
+
+    static {
+        CLAIM_SCRIPT = new DefaultRedisScript<>();
+        CLAIM_SCRIPT.setLocation(new ClassPathResource("delta_claim.lua"));
+        CLAIM_SCRIPT.setResultType(String.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final String deltaKey;
+    private final String flushingKey;
+    private final CounterBatchLog batchLog;
+    private final CounterAggregator aggregator;
+
+    public RedisDeltaCounter(StringRedisTemplate stringRedisTemplate, String deltaKey, CounterBatchLog batchLog) {
+        this(stringRedisTemplate, deltaKey, batchLog, null);
+    }
+
+    public RedisDeltaCounter(StringRedisTemplate stringRedisTemplate, String deltaKey, CounterBatchLog batchLog,
+                             CounterAggregator aggregator) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.deltaKey = deltaKey;
+        this.flushingKey = flushingKey(deltaKey);
+        this.batchLog = batchLog;
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * @Param deltaKey:
+     * @return: java.lang.String 正在写回数据库的增量hash
+     */
+    public static String flushingKey(String deltaKey) {
+        return deltaKey + FLUSHING_SUFFIX;
+    }
+
+    public String getDeltaKey() {
+        return deltaKey;
+    }
+
+    public void incr(Long id, long delta) {
+        if (aggregator != null) {
+            aggregator.add(deltaKey, id, delta);
+            return;
+        }
+        stringRedisTemplate.opsForHash().increment(deltaKey, id.toString(), delta);
+    }
+
+    /**
+     * @Param conn: 管道连接
+     * @Param fields: 计数的id
+     * @return: void
+     * description: 在调用方的管道中读取增量，占用两个结果，用sumDeltas取出
+     */
+    public static void pipelineDeltas(StringRedisConnection conn, String deltaKey, String[] fields) {
+        conn.hMGet(deltaKey, fields);
+        conn.hMGet(flushingKey(deltaKey), fields);
+    }
+
+    /**
+     * @Param results: 管道结果
+     * @Param index: pipelineDeltas第一个结果的位置
+     * @Param i: 第几个id
+     * @return: int 两个hash中增量的和
+     */
+    public static int sumDeltas(List<Object> results, int index, int i) {
+        return parse(((List<?>) results.get(index)).get(i)) + parse(((List<?>) results.get(index + 1)).get(i));
+    }
+
+    /**
+     * @Param ids:
+     * @return: java.util.Map<java.lang.Long,java.lang.Integer> 尚未写回的增量，没有增量的id不包含在结果中
+     */
+    public Map<Long, Integer> deltas(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        String[] fields = ids.stream().map(String::valueOf).toArray(String[]::new);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            pipelineDeltas((StringRedisConnection) connection, deltaKey, fields);
+            return null;
+        });
+        Map<Long, Integer> deltas = new HashMap<>(ids.size() * 2);
+        int i = 0;
+        for (Long id : ids) {
+            int delta = sumDeltas(results, 0, i++);
+            if (delta != 0) {
+                deltas.put(id, delta);
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * @Param writer: 批量写回数据库，参数是 id -> 增量，在事务中执行，抛出异常时下次重试
+     * @return: void
+     * description: 取出当前所有增量写回数据库
+     */
+    public void flush(Consumer<Map<Long, Integer>> writer) {
+        SimpleRedisLock lock = new SimpleRedisLock(deltaKey, stringRedisTemplate);
+        if (!lock.tryLock(COUNTER_FLUSH_LOCK_TTL)) {
+            return;
+        }
+        try {
+            String batchId = stringRedisTemplate.execute(CLAIM_SCRIPT, Arrays.asList(deltaKey, flushingKey),
+                    IdUtil.fastSimpleUUID());
+            if (batchId == null) {
+                return;
+            }
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(flushingKey);
+            Map<Long, Integer> deltas = new HashMap<>(entries.size() * 2);
+            entries.forEach((id, delta) -> {
+                int value = parse(delta);
+                if (!BATCH_FIELD.equals(id) && value != 0) {
+                    deltas.put(Long.valueOf(id.toString()), value);
+                }
+            });
+            if (!deltas.isEmpty()) {
+                batchLog.applyOnce(deltaKey + ":" + batchId, () -> writer.accept(deltas));
+            }
+            stringRedisTemplate.delete(flushingKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int parse(Object value) {
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+}
@@ -1,37 +1,26 @@
 package com.hmdp.utils;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
 import com.hmdp.dto.UserDTO;
-import com.hmdp.utils.UserHolder;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
-import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
-
-import static com.hmdp.utils.RedisConstants.LOGIN_USER_KEY;
-import static com.hmdp.utils.RedisConstants.LOGIN_USER_TTL;
-
 /**
  * @author smin
  * @date 2023/5/12
  * @Description 第一个拦截器
  *              拦截所有的路径，刷新令牌，同时把user数据放入threadLocal中
+ *              会话通过SessionCache读取，常见情况下不访问Redis
  */
 @Log4j2
 public class RefreshTokenInterceptor implements HandlerInterceptor {
-    private StringRedisTemplate stringRedisTemplate;
+    private SessionCache sessionCache;
 
-    public RefreshTokenInterceptor(StringRedisTemplate stringRedisTemplate){
-        this.stringRedisTemplate=stringRedisTemplate;
+    public RefreshTokenInterceptor(SessionCache sessionCache){
+        this.sessionCache=sessionCache;
     }
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
@@ -39,14 +28,11 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         if (StrUtil.isBlank(token)){
             return true;
         }
-        String key=LOGIN_USER_KEY+token;
-        Map<Object, Object> userMap = stringRedisTemplate.opsForHash().entries(key);
-        if (userMap.isEmpty()){
+        UserDTO userDTO = sessionCache.get(token);
+        if (userDTO == null){
             return true;
         }
-        UserDTO userDTO= BeanUtil.fillBeanWithMap(userMap,new UserDTO(),false);
         UserHolder.saveUser(userDTO);
-        stringRedisTemplate.expire(key,LOGIN_USER_TTL, TimeUnit.MINUTES);
         return true;
     }
 
@@ -0,0 +1,147 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 登录会话的近端缓存
+ *              token -> 用户信息在进程内缓存LOGIN_USER_LOCAL_TTL秒，命中时不访问Redis；
+ *              未命中时一次管道读取 login:token:{token} 和剩余有效期；
+ *              只有会话的有效期已经用掉LOGIN_USER_REFRESH_RATIO以上时才EXPIRE续期，而不是每个请求都续期；
+ *              登出时删除Redis中的会话并在 session:invalidated 频道广播，各节点收到后移除本地缓存，
+ *              通知丢失时本地缓存最多多保留LOGIN_USER_LOCAL_TTL秒
+ */
+@Slf4j
+@Component
+public class SessionCache implements MessageListener {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final NearCache<String, Session> sessions =
+            new NearCache<>(LOGIN_USER_LOCAL_TTL, TimeUnit.SECONDS, LOGIN_USER_LOCAL_MAX_SIZE);
+    /**
+     * 剩余有效期低于这个值时续期
+     */
+    private final long refreshBelowMillis =
+            (long) (TimeUnit.MINUTES.toMillis(LOGIN_USER_TTL) * (1 - LOGIN_USER_REFRESH_RATIO));
+
+    public SessionCache(StringRedisTemplate stringRedisTemplate, RedisMessageListenerContainer listenerContainer) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(SESSION_INVALIDATED_CHANNEL));
+    }
+
+    /**
+     * @Param token:
+     * @return: com.hmdp.dto.UserDTO 会话不存在或已过期时返回null
+     * description: 查询token对应的登录用户，必要时顺便续期
+     */
+    public UserDTO get(String token) {
+        Session session = sessions.get(token);
+        if (session == null) {
+            session = load(token);
+            if (session == null) {
+                return null;
+            }
+            sessions.put(token, session);
+        }
+        if (session.expireAtMillis - System.currentTimeMillis() < refreshBelowMillis && !refresh(token, session)) {
+            return null;
+        }
+        return session.user;
+    }
+
+    /**
+     * @Param token:
+     * @return: void
+     * description: 登出，删除会话并通知所有节点
+     */
+    public void invalidate(String token) {
+        sessions.remove(token);
+        stringRedisTemplate.delete(LOGIN_USER_KEY + token);
+        stringRedisTemplate.convertAndSend(SESSION_INVALIDATED_CHANNEL, token);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        sessions.remove(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Session load(String token) {
+        String key = LOGIN_USER_KEY + token;
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.hGetAll(key);
+            conn.pTtl(key);
+            return null;
+        });
+        Map<Object, Object> userMap = (Map<Object, Object>) results.get(0);
+        Long ttl = (Long) results.get(1);
+        if (userMap == null || userMap.isEmpty() || ttl == null || ttl == -2) {
+            return null;
+        }
+        UserDTO user = BeanUtil.fillBeanWithMap(userMap, new UserDTO(), false);
+        // 没有过期时间的会话（-1）按刚续期处理
+        long remaining = ttl < 0 ? TimeUnit.MINUTES.toMillis(LOGIN_USER_TTL) : ttl;
+        return new Session(user, System.currentTimeMillis() + remaining);
+    }
+
+    /**
+     * @return: boolean 会话在Redis中已经不存在时返回false
+     */
+    private boolean refresh(String token, Session session) {
+        // 同一个会话同时只有一个请求去续期，其他请求继续使用缓存
+        if (!session.refreshing.compareAndSet(false, true)) {
+            return true;
+        }
+        try {
+            if (!Boolean.TRUE.equals(stringRedisTemplate.expire(LOGIN_USER_KEY + token, LOGIN_USER_TTL, TimeUnit.MINUTES))) {
+                sessions.remove(token);
+                return false;
+            }
+            session.expireAtMillis = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(LOGIN_USER_TTL);
+            return true;
+        } finally {
+            session.refreshing.set(false);
+        }
+    }
+
+    private static class Session {
+        final UserDTO user;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        /**
+         * 本节点所知的Redis会话过期时间
+         */
+        volatile long expireAtMillis;
+
+        Session(UserDTO user, long expireAtMillis) {
+            this.user = user;
+            this.expireAtMillis = expireAtMillis;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 店铺新增或修改后发布的事件，供各个内存索引增量更新
+ */
+@Getter
+public class ShopChangedEvent extends ApplicationEvent {
+
+    /**
+     * 修改前的店铺，新增时为null
+     */
+    private final Shop before;
+
+    /**
+     * 修改后的完整店铺数据
+     */
+    private final Shop after;
+
+    public ShopChangedEvent(Object source, Shop before, Shop after) {
+        super(source);
+        this.before = before;
+        this.after = after;
+    }
+}
@@ -0,0 +1,337 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.dto.FacetResult;
+import com.hmdp.dto.ShopFilter;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 店铺多条件筛选的位图索引
+ *              类型、商圈、价格区间、评分的每个取值对应一个RoaringBitmap保存店铺id，
+ *              筛选就是位图求交集，同时返回各维度每个取值的数量；
+ *              评分按分值分桶，从高分往低分遍历，只取出当前页的id，结果天然按评分排序；
+ *              "正在营业"条件使用ShopOpenHoursIndex当前时间段的位图
+ */
+@Slf4j
+@Component
+public class ShopFacetIndex extends RebuildableShopIndex<ShopFacetIndex.Bitmaps> {
+
+    public static final String FACET_TYPE = "typeId";
+    public static final String FACET_AREA = "area";
+    public static final String FACET_PRICE = "priceBand";
+    public static final String FACET_SCORE = "minScore";
+    public static final String FACET_OPEN = "openNow";
+
+    /**
+     * 价格区间的下界（元），最后一个区间没有上界
+     */
+    public static final long[] PRICE_BANDS = {0, 50, 100, 200, 500};
+    /**
+     * 评分是实际评分的10倍，取值0~50
+     */
+    private static final int MAX_SCORE = 50;
+    /**
+     * 返回数量的最低评分档位，4.5分、4分、3.5分、3分
+     */
+    private static final int[] SCORE_STEPS = {45, 40, 35, 30};
+
+    private final ShopOpenHoursIndex openHoursIndex;
+    private Bitmaps bitmaps = new Bitmaps();
+
+    public ShopFacetIndex(ShopMapper shopMapper, ExecutorRegistry executorRegistry, ShopOpenHoursIndex openHoursIndex) {
+        super(shopMapper, executorRegistry);
+        this.openHoursIndex = openHoursIndex;
+    }
+
+    @Override
+    protected QueryWrapper<Shop> query() {
+        return new QueryWrapper<Shop>().select("id", "type_id", "area", "avg_price", "score");
+    }
+
+    @Override
+    protected Bitmaps build(List<Shop> shops) {
+        Bitmaps state = new Bitmaps();
+        for (Shop shop : shops) {
+            state.add(shop);
+        }
+        state.optimize();
+        return state;
+    }
+
+    @Override
+    protected void swap(Bitmaps state) {
+        bitmaps = state;
+    }
+
+    @Override
+    protected void onRebuilt(Bitmaps state) {
+        log.info("店铺筛选索引构建完成，店铺数量：{}，商圈数量：{}", state.docs.size(), state.areas.size());
+    }
+
+    @Override
+    protected void apply(Shop shop) {
+        bitmaps.remove(shop.getId().intValue());
+        bitmaps.add(shop);
+    }
+
+    /**
+     * @Param filter: 筛选条件
+     * @Param current: 页码
+     * @Param pageSize:
+     * @return: com.hmdp.dto.FacetResult<java.lang.Long> 当前页的店铺id（按评分从高到低）、总数和各维度的数量
+     * description: 多条件筛选店铺；要求正在营业但营业时间索引还未就绪时抛出IllegalStateException
+     */
+    public FacetResult<Long> filter(ShopFilter filter, int current, int pageSize) {
+        if (Boolean.TRUE.equals(filter.getOpenNow()) && !openHoursIndex.isReady()) {
+            throw new IllegalStateException("营业时间索引未就绪");
+        }
+        // 营业时间索引有自己的锁，先在锁外取出当前时间段的位图
+        RoaringBitmap openNow = openHoursIndex.isReady() ? openHoursIndex.openNow() : null;
+        lock.readLock().lock();
+        try {
+            Map<String, RoaringBitmap> conditions = conditions(filter);
+            if (openNow != null && Boolean.TRUE.equals(filter.getOpenNow())) {
+                conditions.put(FACET_OPEN, openNow);
+            }
+            RoaringBitmap matched = and(conditions, null);
+            Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+            facets.put(FACET_TYPE, counts(bitmaps.types, and(conditions, FACET_TYPE)));
+            facets.put(FACET_AREA, counts(bitmaps.areas, and(conditions, FACET_AREA)));
+            facets.put(FACET_PRICE, counts(bitmaps.prices, and(conditions, FACET_PRICE)));
+            facets.put(FACET_SCORE, scoreCounts(and(conditions, FACET_SCORE)));
+            if (openNow != null) {
+                facets.put(FACET_OPEN, Collections.singletonMap("true",
+                        RoaringBitmap.andCardinality(and(conditions, FACET_OPEN), openNow)));
+            }
+            return new FacetResult<>(page(matched, current, pageSize), matched.getCardinality(), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @Param price: 人均价格
+     * @return: int 价格区间下标
+     */
+    public static int priceBand(Long price) {
+        long value = price == null ? 0 : price;
+        for (int i = PRICE_BANDS.length - 1; i > 0; i--) {
+            if (value >= PRICE_BANDS[i]) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 把筛选条件转换成位图，某个条件的取值不存在时对应空位图
+     */
+    private Map<String, RoaringBitmap> conditions(ShopFilter filter) {
+        Map<String, RoaringBitmap> conditions = new HashMap<>();
+        if (filter.getTypeId() != null) {
+            conditions.put(FACET_TYPE, bitmaps.types.getOrDefault(filter.getTypeId().toString(), new RoaringBitmap()));
+        }
+        if (StrUtil.isNotBlank(filter.getArea())) {
+            conditions.put(FACET_AREA, bitmaps.areas.getOrDefault(filter.getArea(), new RoaringBitmap()));
+        }
+        if (filter.getPriceBand() != null) {
+            conditions.put(FACET_PRICE, bitmaps.prices.getOrDefault(filter.getPriceBand().toString(), new RoaringBitmap()));
+        }
+        if (filter.getMinScore() != null && filter.getMinScore() > 0) {
+            conditions.put(FACET_SCORE, scoreAtLeast(filter.getMinScore()));
+        }
+        return conditions;
+    }
+
+    /**
+     * 对除了excluded以外的条件求交集，没有条件时返回全部店铺
+     */
+    private RoaringBitmap and(Map<String, RoaringBitmap> conditions, String excluded) {
+        List<RoaringBitmap> list = new ArrayList<>(conditions.size());
+        conditions.forEach((facet, bitmap) -> {
+            if (!facet.equals(excluded)) {
+                list.add(bitmap);
+            }
+        });
+        if (list.isEmpty()) {
+            return bitmaps.all;
+        }
+        if (list.size() == 1) {
+            return list.get(0);
+        }
+        return FastAggregation.and(list.iterator());
+    }
+
+    private RoaringBitmap scoreAtLeast(int minScore) {
+        List<RoaringBitmap> list = new ArrayList<>();
+        for (int score = Math.min(minScore, MAX_SCORE + 1); score <= MAX_SCORE; score++) {
+            if (bitmaps.scores[score] != null) {
+                list.add(bitmaps.scores[score]);
+            }
+        }
+        return list.isEmpty() ? new RoaringBitmap() : FastAggregation.or(list.iterator());
+    }
+
+    private Map<String, Integer> counts(Map<String, RoaringBitmap> values, RoaringBitmap base) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        values.forEach((value, bitmap) -> {
+            int count = RoaringBitmap.andCardinality(base, bitmap);
+            if (count > 0) {
+                counts.put(value, count);
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * 每个评分档位的数量是该分值及以上所有分桶的累加
+     */
+    private Map<String, Integer> scoreCounts(RoaringBitmap base) {
+        int[] exact = new int[MAX_SCORE + 1];
+        for (int score = 0; score <= MAX_SCORE; score++) {
+            if (bitmaps.scores[score] != null) {
+                exact[score] = RoaringBitmap.andCardinality(base, bitmaps.scores[score]);
+            }
+        }
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (int step : SCORE_STEPS) {
+            int count = 0;
+            for (int score = step; score <= MAX_SCORE; score++) {
+                count += exact[score];
+            }
+            counts.put(String.valueOf(step), count);
+        }
+        return counts;
+    }
+
+    /**
+     * 从最高分的分桶开始，跳过前面页的数量，只取出当前页的id；同一分值内按id排序
+     */
+    private List<Long> page(RoaringBitmap matched, int current, int pageSize) {
+        if (current < 1 || pageSize < 1) {
+            return Collections.emptyList();
+        }
+        // 页码很大时相乘会溢出
+        long skip = (long) (current - 1) * pageSize;
+        List<Long> ids = new ArrayList<>(pageSize);
+        for (int score = MAX_SCORE; score >= 0 && ids.size() < pageSize; score--) {
+            RoaringBitmap bucket = bitmaps.scores[score];
+            if (bucket == null) {
+                continue;
+            }
+            int count = RoaringBitmap.andCardinality(matched, bucket);
+            if (skip >= count) {
+                skip -= count;
+                continue;
+            }
+            IntIterator it = RoaringBitmap.and(matched, bucket).getIntIterator();
+            while (it.hasNext() && ids.size() < pageSize) {
+                int id = it.next();
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    ids.add((long) id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 所有位图和每个店铺当前所在的取值，增量更新时据此从旧取值的位图中删除
+     */
+    static class Bitmaps {
+        final RoaringBitmap all = new RoaringBitmap();
+        final Map<String, RoaringBitmap> types = new TreeMap<>();
+        final Map<String, RoaringBitmap> areas = new TreeMap<>();
+        final Map<String, RoaringBitmap> prices = new TreeMap<>();
+        final RoaringBitmap[] scores = new RoaringBitmap[MAX_SCORE + 1];
+        final Map<Integer, Doc> docs = new HashMap<>();
+
+        void add(Shop shop) {
+            int id = shop.getId().intValue();
+            Doc doc = new Doc(
+                    shop.getTypeId() == null ? null : shop.getTypeId().toString(),
+                    StrUtil.isBlank(shop.getArea()) ? null : shop.getArea(),
+                    String.valueOf(priceBand(shop.getAvgPrice())),
+                    shop.getScore() == null ? 0 : Math.max(0, Math.min(MAX_SCORE, shop.getScore())));
+            docs.put(id, doc);
+            all.add(id);
+            put(types, doc.type, id);
+            put(areas, doc.area, id);
+            put(prices, doc.price, id);
+            if (scores[doc.score] == null) {
+                scores[doc.score] = new RoaringBitmap();
+            }
+            scores[doc.score].add(id);
+        }
+
+        void remove(int id) {
+            Doc doc = docs.remove(id);
+            if (doc == null) {
+                return;
+            }
+            all.remove(id);
+            delete(types, doc.type, id);
+            delete(areas, doc.area, id);
+            delete(prices, doc.price, id);
+            scores[doc.score].remove(id);
+        }
+
+        void optimize() {
+            all.runOptimize();
+            types.values().forEach(RoaringBitmap::runOptimize);
+            areas.values().forEach(RoaringBitmap::runOptimize);
+            prices.values().forEach(RoaringBitmap::runOptimize);
+            for (RoaringBitmap bitmap : scores) {
+                if (bitmap != null) {
+                    bitmap.runOptimize();
+                }
+            }
+        }
+
+        private static void put(Map<String, RoaringBitmap> map, String value, int id) {
+            if (value != null) {
+                map.computeIfAbsent(value, k -> new RoaringBitmap()).add(id);
+            }
+        }
+
+        private static void delete(Map<String, RoaringBitmap> map, String value, int id) {
+            if (value == null) {
+                return;
+            }
+            RoaringBitmap bitmap = map.get(value);
+            if (bitmap != null) {
+                bitmap.remove(id);
+                if (bitmap.isEmpty()) {
+                    map.remove(value);
+                }
+            }
+        }
+    }
+
+    private static class Doc {
+        final String type;
+        final String area;
+        final String price;
+        final int score;
+
+        Doc(String type, String area, String price, int score) {
+            this.type = type;
+            this.area = area;
+            this.price = price;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 进程内的店铺坐标索引，附近店铺查询不需要访问Redis
+ *              按经纬度把平面切成固定大小的网格，每个网格用基本类型数组保存店铺id、坐标和类型，
+ *              查询时只扫描覆盖查询范围的网格；启动时从tb_shop加载，之后根据ShopChangedEvent增量更新
+ */
+@Slf4j
+@Component
+public class ShopGeoIndex extends RebuildableShopIndex<ShopGeoIndex.Cells> {
+
+    /**
+     * 网格边长（度），约1公里
+     */
+    private static final double CELL_DEGREES = 0.01;
+    /**
+     * 与Redis GEO使用相同的地球半径，保证两种实现计算的距离一致
+     */
+    private static final double EARTH_RADIUS_METERS = 6372797.560856;
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * EARTH_RADIUS_METERS;
+    /**
+     * k近邻查询最多向外扩展的圈数
+     */
+    private static final int MAX_RINGS = 100;
+    /**
+     * 与Redis GEO相同的坐标范围，超出范围的坐标没有意义
+     */
+    public static final double MAX_LONGITUDE = 180;
+    public static final double MAX_LATITUDE = 85.05112878;
+    private static final int MIN_CX = cellIndex(-MAX_LONGITUDE), MAX_CX = cellIndex(MAX_LONGITUDE);
+    private static final int MIN_CY = cellIndex(-MAX_LATITUDE), MAX_CY = cellIndex(MAX_LATITUDE);
+
+    private Map<Long, Cell> cells = new HashMap<>();
+    private Map<Long, Long> shopCells = new HashMap<>();
+
+    public ShopGeoIndex(ShopMapper shopMapper, ExecutorRegistry executorRegistry) {
+        super(shopMapper, executorRegistry);
+    }
+
+    @Override
+    protected QueryWrapper<Shop> query() {
+        return new QueryWrapper<Shop>().select("id", "type_id", "x", "y");
+    }
+
+    @Override
+    protected Cells build(List<Shop> shops) {
+        Cells state = new Cells(new HashMap<>(), new HashMap<>(shops.size() * 2));
+        for (Shop shop : shops) {
+            add(state.cells, state.shopCells, shop);
+        }
+        return state;
+    }
+
+    @Override
+    protected void swap(Cells state) {
+        cells = state.cells;
+        shopCells = state.shopCells;
+    }
+
+    @Override
+    protected void onRebuilt(Cells state) {
+        log.info("店铺坐标索引构建完成，店铺数量：{}，网格数量：{}", state.shopCells.size(), state.cells.size());
+    }
+
+    @Override
+    protected void apply(Shop shop) {
+        remove(shop.getId());
+        add(cells, shopCells, shop);
+    }
+
+    /**
+     * @Param x: 经度
+     * @Param y: 纬度
+     * @Param radiusMeters: 半径（米）
+     * @Param typeId: 店铺类型，为null时不过滤
+     * @Param limit: 最多返回的数量
+     * @return: java.util.List<com.hmdp.utils.ShopGeoIndex.Neighbor>
+     * description: 查询半径范围内的店铺，按距离由近到远排序
+     */
+    public List<Neighbor> radius(double x, double y, double radiusMeters, Long typeId, int limit) {
+        if (!isValid(x, y)) {
+            return new ArrayList<>();
+        }
+        double dy = radiusMeters / METERS_PER_DEGREE;
+        double dx = dy / Math.max(Math.cos(Math.toRadians(y)), 1e-6);
+        // 扫描范围限制在合法坐标对应的网格内，高纬度时dx可能非常大
+        int minCx = Math.max(cellIndex(Math.max(x - dx, -MAX_LONGITUDE)), MIN_CX);
+        int maxCx = Math.min(cellIndex(Math.min(x + dx, MAX_LONGITUDE)), MAX_CX);
+        int minCy = Math.max(cellIndex(Math.max(y - dy, -MAX_LATITUDE)), MIN_CY);
+        int maxCy = Math.min(cellIndex(Math.min(y + dy, MAX_LATITUDE)), MAX_CY);
+        List<Neighbor> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                for (int cy = minCy; cy <= maxCy; cy++) {
+                    Cell cell = cells.get(cellKey(cx, cy));
+                    if (cell != null) {
+                        cell.collect(x, y, radiusMeters, typeId, result);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        result.sort(Comparator.comparingDouble(Neighbor::getDistance));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * @Param x: 经度
+     * @Param y: 纬度
+     * @Param k: 数量
+     * @Param typeId: 店铺类型，为null时不过滤
+     * @return: java.util.List<com.hmdp.utils.ShopGeoIndex.Neighbor>
+     * description: 查询最近的k个店铺，从所在网格开始一圈一圈向外扩展，
+     *              当前圈的最近可能距离已经大于第k近的距离时停止
+     */
+    public List<Neighbor> nearest(double x, double y, int k, Long typeId) {
+        if (!isValid(x, y) || k <= 0) {
+            return new ArrayList<>();
+        }
+        int cx0 = cellIndex(x), cy0 = cellIndex(y);
+        // 一圈网格在经度方向上的最小宽度（米）
+        double ringMeters = CELL_DEGREES * METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians(y)), 1e-6);
+        PriorityQueue<Neighbor> heap = new PriorityQueue<>(k + 1, Comparator.comparingDouble(Neighbor::getDistance).reversed());
+        List<Neighbor> buffer = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int ring = 0; ring <= MAX_RINGS; ring++) {
+                if (heap.size() >= k && heap.peek().getDistance() < (ring - 1) * ringMeters) {
+                    break;
+                }
+                for (int cx = cx0 - ring; cx <= cx0 + ring; cx++) {
+                    for (int cy = cy0 - ring; cy <= cy0 + ring; cy++) {
+                        // 只扫描当前圈的边界网格
+                        if (Math.abs(cx - cx0) != ring && Math.abs(cy - cy0) != ring) {
+                            continue;
+                        }
+                        Cell cell = cells.get(cellKey(cx, cy));
+                        if (cell == null) {
+                            continue;
+                        }
+                        buffer.clear();
+                        cell.collect(x, y, Double.MAX_VALUE, typeId, buffer);
+                        for (Neighbor neighbor : buffer) {
+                            heap.offer(neighbor);
+                            if (heap.size() > k) {
+                                heap.poll();
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Neighbor> result = new ArrayList<>(heap);
+        result.sort(Comparator.comparingDouble(Neighbor::getDistance));
+        return result;
+    }
+
+    private void add(Map<Long, Cell> cells, Map<Long, Long> shopCells, Shop shop) {
+        if (shop.getX() == null || shop.getY() == null) {
+            return;
+        }
+        long key = cellKey(cellIndex(shop.getX()), cellIndex(shop.getY()));
+        cells.computeIfAbsent(key, k -> new Cell()).add(shop.getId(), shop.getX(), shop.getY(),
+                shop.getTypeId() == null ? 0 : shop.getTypeId());
+        shopCells.put(shop.getId(), key);
+    }
+
+    private void remove(Long shopId) {
+        Long key = shopCells.remove(shopId);
+        if (key == null) {
+            return;
+        }
+        Cell cell = cells.get(key);
+        if (cell != null && cell.remove(shopId) && cell.size == 0) {
+            cells.remove(key);
+        }
+    }
+
+    /**
+     * @Param x: 经度
+     * @Param y: 纬度
+     * @return: boolean 经度在[-180,180]、纬度在[-85.05112878,85.05112878]范围内
+     */
+    public static boolean isValid(double x, double y) {
+        return x >= -MAX_LONGITUDE && x <= MAX_LONGITUDE && y >= -MAX_LATITUDE && y <= MAX_LATITUDE;
+    }
+
+    static int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    static double distance(double x1, double y1, double x2, double y2) {
+        double lat1 = Math.toRadians(y1), lat2 = Math.toRadians(y2);
+        double sinLat = Math.sin((lat2 - lat1) / 2);
+        double sinLon = Math.sin(Math.toRadians(x2 - x1) / 2);
+        double a = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(a));
+    }
+
+    /**
+     * 一个网格内的店铺，使用并列的基本类型数组保存
+     */
+    /**
+     * 重建时构建好的网格和店铺所在网格
+     */
+    @AllArgsConstructor
+    static class Cells {
+        private final Map<Long, Cell> cells;
+        private final Map<Long, Long> shopCells;
+    }
+
+    private static class Cell {
+        private long[] ids = new long[8];
+        private double[] xs = new double[8];
+        private double[] ys = new double[8];
+        private long[] types = new long[8];
+        private int size;
+
+        void add(long id, double x, double y, long type) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                types = Arrays.copyOf(types, capacity);
+            }
+            ids[size] = id;
+            xs[size] = x;
+            ys[size] = y;
+            types[size] = type;
+            size++;
+        }
+
+        boolean remove(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    // 用最后一个元素填补空位
+                    size--;
+                    ids[i] = ids[size];
+                    xs[i] = xs[size];
+                    ys[i] = ys[size];
+                    types[i] = types[size];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void collect(double x, double y, double radiusMeters, Long typeId, List<Neighbor> out) {
+            for (int i = 0; i < size; i++) {
+                if (typeId != null && types[i] != typeId) {
+                    continue;
+                }
+                double d = distance(x, y, xs[i], ys[i]);
+                if (d <= radiusMeters) {
+                    out.add(new Neighbor(ids[i], d));
+                }
+            }
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Neighbor {
+        private final long shopId;
+        private final double distance;
+    }
+}
@@ -0,0 +1,229 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.RandomUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.Voucher;
+import com.hmdp.mapper.ShopMapper;
+import com.hmdp.mapper.VoucherMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 店铺排行榜
+ *              销量榜按天、按周分别一个SortedSet：rank:sold:{typeId|all}:{day|week}:{日期}，
+ *              订单入库后ZINCRBY，key带日期自然轮换并设置过期时间；
+ *              评分榜 rank:score:{typeId|all} 在店铺评分变化时更新；
+ *              每个榜单只保留前RANK_KEEP_SIZE名，查询最多返回前RANK_MAX_SIZE名
+ */
+@Slf4j
+@Component
+public class ShopLeaderboard {
+
+    private static final String ALL = "all";
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+    /**
+     * 每次更新销量时以这个概率裁剪榜单，避免每次都执行ZREMRANGEBYRANK
+     */
+    private static final int TRIM_ONE_IN = 100;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final VoucherMapper voucherMapper;
+    private final ShopMapper shopMapper;
+    /**
+     * 优惠券所属店铺、店铺所属类型都几乎不会变化，缓存在本地避免每笔订单都查库
+     */
+    private final NearCache<Long, Long> voucherShops = new NearCache<>(10, TimeUnit.MINUTES, 10000);
+    private final NearCache<Long, Long> shopTypes = new NearCache<>(10, TimeUnit.MINUTES, 10000);
+
+    public ShopLeaderboard(StringRedisTemplate stringRedisTemplate, VoucherMapper voucherMapper, ShopMapper shopMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.voucherMapper = voucherMapper;
+        this.shopMapper = shopMapper;
+    }
+
+    /**
+     * 榜单
+     */
+    public enum Board {
+        SOLD_DAY, SOLD_WEEK, SCORE;
+
+        /**
+         * 参数不合法时返回本周销量榜
+         */
+        public static Board of(String name) {
+            for (Board board : values()) {
+                if (board.name().equalsIgnoreCase(name) || board.name().replace("_", "-").equalsIgnoreCase(name)) {
+                    return board;
+                }
+            }
+            return SOLD_WEEK;
+        }
+    }
+
+    /**
+     * @Param board:
+     * @Param typeId: 店铺类型，为空时查询全部类型的榜单
+     * @Param limit:
+     * @return: java.util.List<java.lang.Long> 按名次排列的店铺id
+     * description: 查询榜单
+     */
+    public List<Long> top(Board board, Long typeId, int limit) {
+        String key = key(board, typeId == null ? ALL : typeId.toString(), LocalDate.now());
+        Set<String> members = stringRedisTemplate.opsForZSet().reverseRange(key, 0, Math.min(limit, RANK_MAX_SIZE) - 1);
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return members.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    /**
+     * @Param voucherId:
+     * @return: java.lang.Long 优惠券所属的店铺，优惠券不存在时返回null
+     */
+    public Long shopOf(Long voucherId) {
+        return voucherShops.get(voucherId, id -> {
+            Voucher voucher = voucherMapper.selectById(id);
+            return voucher == null ? null : voucher.getShopId();
+        });
+    }
+
+    /**
+     * @Param shopId: 订单所属的店铺
+     * @return: void
+     * description: 订单入库后调用，增加店铺在当天和本周销量榜的销量
+     */
+    public void recordSale(Long shopId) {
+        Long typeId = shopTypes.get(shopId, id -> {
+            Shop shop = shopMapper.selectById(id);
+            return shop == null ? null : shop.getTypeId();
+        });
+        LocalDate today = LocalDate.now();
+        List<String> dayKeys = new ArrayList<>(2);
+        List<String> weekKeys = new ArrayList<>(2);
+        dayKeys.add(key(Board.SOLD_DAY, ALL, today));
+        weekKeys.add(key(Board.SOLD_WEEK, ALL, today));
+        if (typeId != null) {
+            dayKeys.add(key(Board.SOLD_DAY, typeId.toString(), today));
+            weekKeys.add(key(Board.SOLD_WEEK, typeId.toString(), today));
+        }
+        boolean trim = RandomUtil.randomInt(TRIM_ONE_IN) == 0;
+        String member = shopId.toString();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String key : dayKeys) {
+                conn.zIncrBy(key, 1, member);
+                conn.expire(key, TimeUnit.DAYS.toSeconds(RANK_DAY_TTL));
+                if (trim) {
+                    conn.zRemRange(key, 0, -RANK_KEEP_SIZE - 1);
+                }
+            }
+            for (String key : weekKeys) {
+                conn.zIncrBy(key, 1, member);
+                conn.expire(key, TimeUnit.DAYS.toSeconds(RANK_WEEK_TTL));
+                if (trim) {
+                    conn.zRemRange(key, 0, -RANK_KEEP_SIZE - 1);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 店铺评分或类型变化时更新评分榜
+     */
+    @EventListener
+    public void onShopChanged(ShopChangedEvent event) {
+        Shop before = event.getBefore();
+        Shop after = event.getAfter();
+        shopTypes.remove(after.getId());
+        if (after.getScore() == null) {
+            return;
+        }
+        boolean typeChanged = before != null && before.getTypeId() != null && !before.getTypeId().equals(after.getTypeId());
+        if (before != null && !typeChanged && after.getScore().equals(before.getScore())) {
+            return;
+        }
+        String member = after.getId().toString();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            if (typeChanged) {
+                conn.zRem(key(Board.SCORE, before.getTypeId().toString(), null), member);
+            }
+            List<String> keys = new ArrayList<>(2);
+            keys.add(key(Board.SCORE, ALL, null));
+            if (after.getTypeId() != null) {
+                keys.add(key(Board.SCORE, after.getTypeId().toString(), null));
+            }
+            for (String key : keys) {
+                conn.zAdd(key, after.getScore(), member);
+                conn.zRemRange(key, 0, -RANK_KEEP_SIZE - 1);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return: int 写入的店铺数量
+     * description: 从数据库重建评分榜，每个类型只取前RANK_KEEP_SIZE名
+     */
+    public int rebuildScoreBoards() {
+        List<Shop> shops = shopMapper.selectList(new QueryWrapper<Shop>().select("id", "type_id", "score"));
+        Map<String, List<Shop>> boards = new HashMap<>();
+        for (Shop shop : shops) {
+            if (shop.getScore() == null) {
+                continue;
+            }
+            boards.computeIfAbsent(ALL, k -> new ArrayList<>()).add(shop);
+            if (shop.getTypeId() != null) {
+                boards.computeIfAbsent(shop.getTypeId().toString(), k -> new ArrayList<>()).add(shop);
+            }
+        }
+        int count = 0;
+        Comparator<Shop> byScore = Comparator.comparing(Shop::getScore).reversed();
+        for (Map.Entry<String, List<Shop>> entry : boards.entrySet()) {
+            List<Shop> top = entry.getValue().stream().sorted(byScore).limit(RANK_KEEP_SIZE).collect(Collectors.toList());
+            Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>(top.size() * 2);
+            for (Shop shop : top) {
+                tuples.add(new DefaultTypedTuple<>(shop.getId().toString(), shop.getScore().doubleValue()));
+            }
+            String key = key(Board.SCORE, entry.getKey(), null);
+            String tmpKey = key + ":loading";
+            stringRedisTemplate.delete(tmpKey);
+            stringRedisTemplate.opsForZSet().add(tmpKey, tuples);
+            stringRedisTemplate.rename(tmpKey, key);
+            count += top.size();
+        }
+        log.info("评分榜重建完成，榜单数量：{}", boards.size());
+        return count;
+    }
+
+    private static String key(Board board, String type, LocalDate date) {
+        switch (board) {
+            case SOLD_DAY:
+                return RANK_SOLD_KEY + type + ":day:" + date.format(DAY_FORMATTER);
+            case SOLD_WEEK:
+                return RANK_SOLD_KEY + type + ":week:" + date.get(IsoFields.WEEK_BASED_YEAR)
+                        + "w" + date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+            default:
+                return RANK_SCORE_KEY + type;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 店铺名称的n-gram倒排索引，替代 LIKE '%name%' 全表扫描
+ *              店铺名切分成单字和相邻两个字，每个gram对应一个压缩位图（RoaringBitmap）保存店铺id，
+ *              查询时对所有gram的位图求交集，再校验名称确实包含关键字，最后按评分、销量排序；
+ *              只有最终一页的店铺详情需要查询数据库
+ */
+@Slf4j
+@Component
+public class ShopNameIndex extends RebuildableShopIndex<ShopNameIndex.Postings> {
+
+    /**
+     * 单次查询的时间预算，超出后停止扫描候选，返回已排好序的部分结果
+     */
+    private static final long SEARCH_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private Map<String, RoaringBitmap> postings = new HashMap<>();
+    private Map<Integer, Doc> docs = new HashMap<>();
+
+    public ShopNameIndex(ShopMapper shopMapper, ExecutorRegistry executorRegistry) {
+        super(shopMapper, executorRegistry);
+    }
+
+    @Override
+    protected QueryWrapper<Shop> query() {
+        return new QueryWrapper<Shop>().select("id", "name", "score", "sold");
+    }
+
+    @Override
+    protected Postings build(List<Shop> shops) {
+        Postings state = new Postings(new HashMap<>(), new HashMap<>(shops.size() * 2));
+        for (Shop shop : shops) {
+            add(state.postings, state.docs, shop);
+        }
+        state.postings.values().forEach(RoaringBitmap::runOptimize);
+        return state;
+    }
+
+    @Override
+    protected void swap(Postings state) {
+        postings = state.postings;
+        docs = state.docs;
+    }
+
+    @Override
+    protected void onRebuilt(Postings state) {
+        log.info("店铺名称索引构建完成，店铺数量：{}，gram数量：{}", state.docs.size(), state.postings.size());
+    }
+
+    @Override
+    protected void apply(Shop shop) {
+        remove(shop.getId().intValue());
+        add(postings, docs, shop);
+    }
+
+    /**
+     * @Param keyword: 关键字
+     * @Param current: 页码
+     * @Param pageSize: 每页数量
+     * @return: java.util.List<java.lang.Long> 当前页的店铺id，按评分、销量排序
+     * description: 查询名称包含关键字的店铺
+     */
+    public List<Long> search(String keyword, int current, int pageSize) {
+        String normalized = normalize(keyword);
+        if (normalized.isEmpty() || current < 1 || current > SystemConstants.MAX_SEARCH_PAGE || pageSize < 1) {
+            return Collections.emptyList();
+        }
+        int topN = current * pageSize;
+        List<Doc> top = topMatches(normalized, topN, false);
+        List<Long> ids = new ArrayList<>(pageSize);
+        for (int i = (current - 1) * pageSize; i < top.size(); i++) {
+            ids.add((long) top.get(i).id);
+        }
+        return ids;
+    }
+
+    /**
+     * @Param prefix: 用户已输入的内容
+     * @Param limit: 最多返回的数量
+     * @return: java.util.List<java.lang.String>
+     * description: 输入提示，返回以prefix开头的店铺名，按评分、销量排序
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+        List<Doc> top = topMatches(normalized, limit, true);
+        List<String> names = new ArrayList<>(top.size());
+        for (Doc doc : top) {
+            names.add(doc.name);
+        }
+        return names;
+    }
+
+    private List<Doc> topMatches(String normalized, int topN, boolean prefixOnly) {
+        long deadline = System.nanoTime() + SEARCH_BUDGET_NANOS;
+        // 小顶堆，堆顶是当前排名最靠后的店铺
+        PriorityQueue<Doc> heap = new PriorityQueue<>(topN + 1, Doc.RANK.reversed());
+        lock.readLock().lock();
+        try {
+            RoaringBitmap candidates = candidates(normalized);
+            if (candidates == null) {
+                return Collections.emptyList();
+            }
+            IntIterator it = candidates.getIntIterator();
+            int scanned = 0;
+            while (it.hasNext()) {
+                Doc doc = docs.get(it.next());
+                // bigram交集可能有误判，需要校验原文
+                boolean match = prefixOnly ? doc.normalized.startsWith(normalized) : doc.normalized.contains(normalized);
+                if (match) {
+                    heap.offer(doc);
+                    if (heap.size() > topN) {
+                        heap.poll();
+                    }
+                }
+                if (++scanned % 1024 == 0 && System.nanoTime() > deadline) {
+                    log.warn("店铺名称查询超出时间预算，关键字：{}，已扫描：{}", normalized, scanned);
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Doc> result = new ArrayList<>(heap);
+        result.sort(Doc.RANK);
+        return result;
+    }
+
+    /**
+     * 对关键字的所有gram求交集，某个gram不存在时直接返回null
+     */
+    private RoaringBitmap candidates(String normalized) {
+        Set<String> grams = queryGrams(normalized);
+        List<RoaringBitmap> bitmaps = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            RoaringBitmap bitmap = postings.get(gram);
+            if (bitmap == null) {
+                return null;
+            }
+            bitmaps.add(bitmap);
+        }
+        // 从最短的位图开始求交集
+        bitmaps.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+        RoaringBitmap result = bitmaps.get(0).clone();
+        for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+            result.and(bitmaps.get(i));
+        }
+        return result;
+    }
+
+    private void add(Map<String, RoaringBitmap> postings, Map<Integer, Doc> docs, Shop shop) {
+        if (StrUtil.isBlank(shop.getName())) {
+            return;
+        }
+        int id = shop.getId().intValue();
+        Doc doc = new Doc(id, shop.getName(), normalize(shop.getName()),
+                shop.getScore() == null ? 0 : shop.getScore(),
+                shop.getSold() == null ? 0 : shop.getSold());
+        docs.put(id, doc);
+        for (String gram : indexGrams(doc.normalized)) {
+            postings.computeIfAbsent(gram, k -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    private void remove(int id) {
+        Doc doc = docs.remove(id);
+        if (doc == null) {
+            return;
+        }
+        for (String gram : indexGrams(doc.normalized)) {
+            RoaringBitmap bitmap = postings.get(gram);
+            if (bitmap != null) {
+                bitmap.remove(id);
+                if (bitmap.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * 建立索引时，名称的每个字和相邻两个字都作为gram
+     */
+    private static Set<String> indexGrams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i < text.length(); i++) {
+            grams.add(text.substring(i, i + 1));
+            if (i + 2 <= text.length()) {
+                grams.add(text.substring(i, i + 2));
+            }
+        }
+        return grams;
+    }
+
+    /**
+     * 查询时，一个字的关键字直接查单字gram，否则只需要相邻两个字的gram
+     */
+    private static Set<String> queryGrams(String text) {
+        if (text.length() == 1) {
+            return Collections.singleton(text);
+        }
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 2 <= text.length(); i++) {
+            grams.add(text.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : StrUtil.cleanBlank(text).toLowerCase();
+    }
+
+    /**
+     * 重建时构建好的倒排表和文档
+     */
+    static class Postings {
+        private final Map<String, RoaringBitmap> postings;
+        private final Map<Integer, Doc> docs;
+
+        Postings(Map<String, RoaringBitmap> postings, Map<Integer, Doc> docs) {
+            this.postings = postings;
+            this.docs = docs;
+        }
+    }
+
+    private static class Doc {
+        static final Comparator<Doc> RANK = Comparator.<Doc>comparingInt(d -> d.score).reversed()
+                .thenComparing(Comparator.<Doc>comparingInt(d -> d.sold).reversed())
+                .thenComparingInt(d -> d.id);
+
+        final int id;
+        final String name;
+        final String normalized;
+        final int score;
+        final int sold;
+
+        Doc(int id, String name, String normalized, int score, int sold) {
+            this.id = id;
+            this.name = name;
+            this.normalized = normalized;
+            this.score = score;
+            this.sold = sold;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 店铺营业时间索引
+ *              把一周按半小时切成336个时间段，openHours（如 "10:00-22:00"）解析成每个店铺的时间段位集，
+ *              每个时间段一个RoaringBitmap保存此时营业的店铺id，查询"正在营业"只需要取出当前时间段的位图；
+ *              跨零点的营业时间（如 "22:00-02:00"）延续到第二天，无法解析的营业时间视为不营业
+ */
+@Slf4j
+@Component
+public class ShopOpenHoursIndex extends RebuildableShopIndex<ShopOpenHoursIndex.Slots> {
+
+    public static final int SLOT_MINUTES = 30;
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    public static final int SLOTS_PER_WEEK = SLOTS_PER_DAY * 7;
+
+    private static final Pattern RANGE = Pattern.compile("(\\d{1,2})[:：](\\d{2})\\s*[-~至到]\\s*(\\d{1,2})[:：](\\d{2})");
+
+    private RoaringBitmap[] slots = newSlots();
+    private Map<Integer, long[]> shopSlots = new HashMap<>();
+
+    public ShopOpenHoursIndex(ShopMapper shopMapper, ExecutorRegistry executorRegistry) {
+        super(shopMapper, executorRegistry);
+    }
+
+    @Override
+    protected QueryWrapper<Shop> query() {
+        return new QueryWrapper<Shop>().select("id", "open_hours");
+    }
+
+    @Override
+    protected Slots build(List<Shop> shops) {
+        Slots state = new Slots(newSlots(), new HashMap<>(shops.size() * 2));
+        for (Shop shop : shops) {
+            if (!add(state.slots, state.shopSlots, shop)) {
+                state.unparsed++;
+            }
+        }
+        for (RoaringBitmap bitmap : state.slots) {
+            bitmap.runOptimize();
+        }
+        return state;
+    }
+
+    @Override
+    protected void swap(Slots state) {
+        slots = state.slots;
+        shopSlots = state.shopSlots;
+    }
+
+    @Override
+    protected void onRebuilt(Slots state) {
+        log.info("店铺营业时间索引构建完成，店铺数量：{}，无法解析：{}", state.shopSlots.size(), state.unparsed);
+    }
+
+    @Override
+    protected void apply(Shop shop) {
+        remove(shop.getId().intValue());
+        add(slots, shopSlots, shop);
+    }
+
+    /**
+     * @Param time:
+     * @return: org.roaringbitmap.RoaringBitmap 副本，调用方可以随意修改
+     * description: 指定时间正在营业的店铺id
+     */
+    public RoaringBitmap openAt(LocalDateTime time) {
+        lock.readLock().lock();
+        try {
+            return slots[slotOf(time)].clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return: org.roaringbitmap.RoaringBitmap
+     * description: 当前正在营业的店铺id
+     */
+    public RoaringBitmap openNow() {
+        return openAt(LocalDateTime.now());
+    }
+
+    /**
+     * @Param shopId:
+     * @Param time:
+     * @return: boolean
+     * description: 指定时间店铺是否营业
+     */
+    public boolean isOpen(Long shopId, LocalDateTime time) {
+        lock.readLock().lock();
+        try {
+            long[] bits = shopSlots.get(shopId.intValue());
+            int slot = slotOf(time);
+            return bits != null && (bits[slot >>> 6] & (1L << slot)) != 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @Param openHours: 营业时间，可以包含多个时间段，如 "10:00-14:00,17:00-22:00"
+     * @return: long[] 一周336个时间段的位集，无法解析时返回null
+     * description: 解析营业时间，openHours没有区分星期，每天相同；只要时间段内有营业就视为该时间段营业
+     */
+    public static long[] parse(String openHours) {
+        if (StrUtil.isBlank(openHours)) {
+            return null;
+        }
+        long[] bits = new long[(SLOTS_PER_WEEK + 63) / 64];
+        boolean parsed = false;
+        Matcher matcher = RANGE.matcher(openHours);
+        while (matcher.find()) {
+            int start = minutes(matcher.group(1), matcher.group(2));
+            int end = minutes(matcher.group(3), matcher.group(4));
+            if (start < 0 || end < 0) {
+                continue;
+            }
+            parsed = true;
+            // 结束时间不晚于开始时间说明跨过零点，00:00-24:00和00:00-00:00都是全天营业
+            int length = end > start ? end - start : end + 24 * 60 - start;
+            int startSlot = start / SLOT_MINUTES;
+            int endSlot = (start + length + SLOT_MINUTES - 1) / SLOT_MINUTES;
+            for (int day = 0; day < 7; day++) {
+                for (int slot = startSlot; slot < endSlot; slot++) {
+                    int weekSlot = (day * SLOTS_PER_DAY + slot) % SLOTS_PER_WEEK;
+                    bits[weekSlot >>> 6] |= 1L << weekSlot;
+                }
+            }
+        }
+        return parsed ? bits : null;
+    }
+
+    /**
+     * 星期一0点是第0个时间段
+     */
+    public static int slotOf(LocalDateTime time) {
+        int day = time.getDayOfWeek().getValue() - 1;
+        return day * SLOTS_PER_DAY + (time.getHour() * 60 + time.getMinute()) / SLOT_MINUTES;
+    }
+
+    private static int minutes(String hour, String minute) {
+        int h = Integer.parseInt(hour);
+        int m = Integer.parseInt(minute);
+        if (h > 24 || m > 59 || (h == 24 && m > 0)) {
+            return -1;
+        }
+        return h * 60 + m;
+    }
+
+    private boolean add(RoaringBitmap[] slots, Map<Integer, long[]> shopSlots, Shop shop) {
+        long[] bits = parse(shop.getOpenHours());
+        if (bits == null) {
+            return false;
+        }
+        int id = shop.getId().intValue();
+        shopSlots.put(id, bits);
+        for (int slot = 0; slot < SLOTS_PER_WEEK; slot++) {
+            if ((bits[slot >>> 6] & (1L << slot)) != 0) {
+                slots[slot].add(id);
+            }
+        }
+        return true;
+    }
+
+    private void remove(int id) {
+        long[] bits = shopSlots.remove(id);
+        if (bits == null) {
+            return;
+        }
+        for (int slot = 0; slot < SLOTS_PER_WEEK; slot++) {
+            if ((bits[slot >>> 6] & (1L << slot)) != 0) {
+                slots[slot].remove(id);
+            }
+        }
+    }
+
+    private static RoaringBitmap[] newSlots() {
+        RoaringBitmap[] slots = new RoaringBitmap[SLOTS_PER_WEEK];
+        for (int i = 0; i < SLOTS_PER_WEEK; i++) {
+            slots[i] = new RoaringBitmap();
+        }
+        return slots;
+    }
+
+    /**
+     * 重建时构建好的时间段位图和每个店铺的时间段
+     */
+    static class Slots {
+        private final RoaringBitmap[] slots;
+        private final Map<Integer, long[]> shopSlots;
+        private int unparsed;
+
+        Slots(RoaringBitmap[] slots, Map<Integer, long[]> shopSlots) {
+            this.slots = slots;
+            this.shopSlots = shopSlots;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.NumberUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 按类型浏览店铺的列表索引
+ *              每个类型、每种排序方式一个SortedSet：shop:type:{typeId}:{sort}，member是店铺id，score是排序值，
+ *              分页是一次ZRANGE，店铺详情再从缓存批量获取；店铺新增修改时增量更新，也可以从数据库全量重建
+ */
+@Slf4j
+@Component
+public class ShopTypeListing {
+
+    /**
+     * 最多每隔这么久查询一次Redis确认列表索引是否存在
+     */
+    private static final long READY_CHECK_MILLIS = 5000L;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ShopMapper shopMapper;
+    /**
+     * 最近一次确认的结果，不需要每次查询Redis；Redis被清空后最多READY_CHECK_MILLIS内回退到查询数据库
+     */
+    private volatile boolean ready;
+    private volatile long nextReadyCheck;
+    /**
+     * 重建期间收到的店铺变更，不为null表示正在重建
+     */
+    private List<ShopChangedEvent> pendingChanges;
+    private final Object rebuildLock = new Object();
+
+    public ShopTypeListing(StringRedisTemplate stringRedisTemplate, ShopMapper shopMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.shopMapper = shopMapper;
+    }
+
+    /**
+     * 排序方式
+     */
+    public enum Sort {
+        SCORE("score", true, Shop::getScore),
+        SOLD("sold", true, Shop::getSold),
+        AVG_PRICE("avg_price", false, Shop::getAvgPrice);
+
+        /**
+         * tb_shop中的排序字段，游标分页时使用
+         */
+        @Getter
+        private final String column;
+        @Getter
+        private final boolean desc;
+        @Getter
+        private final Function<Shop, ? extends Number> getter;
+
+        Sort(String column, boolean desc, Function<Shop, ? extends Number> getter) {
+            this.column = column;
+            this.desc = desc;
+            this.getter = getter;
+        }
+
+        /**
+         * 参数不合法时按评分排序
+         */
+        public static Sort of(String name) {
+            for (Sort sort : values()) {
+                if (sort.name().equalsIgnoreCase(name) || sort.name().replace("_", "").equalsIgnoreCase(name)) {
+                    return sort;
+                }
+            }
+            return SCORE;
+        }
+
+        double scoreOf(Shop shop) {
+            Number value = getter.apply(shop);
+            return value == null ? 0 : value.doubleValue();
+        }
+    }
+
+    /**
+     * @return: boolean
+     * description: 列表索引是否已经全量构建过
+     */
+    public boolean isReady() {
+        long now = System.currentTimeMillis();
+        if (now < nextReadyCheck) {
+            return ready;
+        }
+        nextReadyCheck = now + READY_CHECK_MILLIS;
+        ready = Boolean.TRUE.equals(stringRedisTemplate.hasKey(SHOP_TYPE_LIST_READY_KEY));
+        return ready;
+    }
+
+    /**
+     * @Param typeId:
+     * @Param sort:
+     * @Param current: 页码
+     * @Param pageSize:
+     * @return: java.util.List<java.lang.Long> 当前页的店铺id
+     * description: 分页查询某个类型的店铺id，页码从1开始
+     */
+    public List<Long> page(Long typeId, Sort sort, int current, int pageSize) {
+        if (current < 1 || pageSize < 1) {
+            // 负数的ZRANGE下标会从末尾取数据
+            return Collections.emptyList();
+        }
+        String key = key(typeId, sort);
+        long start = (long) (current - 1) * pageSize;
+        long end = start + pageSize - 1;
+        Set<String> members = sort.desc
+                ? stringRedisTemplate.opsForZSet().reverseRange(key, start, end)
+                : stringRedisTemplate.opsForZSet().range(key, start, end);
+        if (members == null || members.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return members.stream().map(Long::valueOf).collect(Collectors.toList());
+    }
+
+    @EventListener
+    public void onShopChanged(ShopChangedEvent event) {
+        apply(event);
+        synchronized (this) {
+            if (pendingChanges != null) {
+                pendingChanges.add(event);
+            }
+        }
+    }
+
+    private void apply(ShopChangedEvent event) {
+        Shop before = event.getBefore();
+        Shop after = event.getAfter();
+        String member = after.getId().toString();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            // 类型变化时从旧类型的列表中删除
+            if (before != null && before.getTypeId() != null && !before.getTypeId().equals(after.getTypeId())) {
+                for (Sort sort : Sort.values()) {
+                    conn.zRem(key(before.getTypeId(), sort), member);
+                }
+            }
+            if (after.getTypeId() != null) {
+                for (Sort sort : Sort.values()) {
+                    conn.zAdd(key(after.getTypeId(), sort), sort.scoreOf(after), member);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @Param deltas: 店铺id -> 已经写回数据库的销量增量
+     * @return: void
+     * description: 销量写回数据库后累加到按销量排序的列表，销量变化不发布ShopChangedEvent
+     */
+    public void incrSold(Map<Long, Integer> deltas) {
+        if (deltas.isEmpty() || !isReady()) {
+            return;
+        }
+        List<Shop> shops = shopMapper.selectList(new QueryWrapper<Shop>().select("id", "type_id").in("id", deltas.keySet()));
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Shop shop : shops) {
+                if (shop.getTypeId() != null) {
+                    conn.zIncrBy(key(shop.getTypeId(), Sort.SOLD), deltas.get(shop.getId()), shop.getId().toString());
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return: int 店铺数量
+     * description: 从数据库全量重建所有类型的列表，先写临时key再重命名，重建过程中不影响查询；
+     *              重建期间本节点收到的店铺变更在重命名后重放，最后删除已经没有店铺的类型的列表
+     */
+    public int rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                pendingChanges = new ArrayList<>();
+            }
+            try {
+                return load();
+            } finally {
+                synchronized (this) {
+                    pendingChanges = null;
+                }
+            }
+        }
+    }
+
+    private int load() {
+        List<Shop> shops = shopMapper.selectList(new QueryWrapper<Shop>().select("id", "type_id", "score", "sold", "avg_price"));
+        Map<Long, List<Shop>> shopsByType = shops.stream()
+                .filter(shop -> shop.getTypeId() != null)
+                .collect(Collectors.groupingBy(Shop::getTypeId));
+        shopsByType.forEach((typeId, typeShops) -> {
+            for (Sort sort : Sort.values()) {
+                String key = key(typeId, sort);
+                String tmpKey = key + ":loading";
+                stringRedisTemplate.delete(tmpKey);
+                for (List<Shop> batch : CollUtil.split(typeShops, SHOP_TYPE_LIST_LOAD_BATCH)) {
+                    Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>(batch.size() * 2);
+                    for (Shop shop : batch) {
+                        tuples.add(new DefaultTypedTuple<>(shop.getId().toString(), sort.scoreOf(shop)));
+                    }
+                    stringRedisTemplate.opsForZSet().add(tmpKey, tuples);
+                }
+                stringRedisTemplate.rename(tmpKey, key);
+            }
+        });
+        List<ShopChangedEvent> changes;
+        synchronized (this) {
+            changes = new ArrayList<>(pendingChanges);
+        }
+        changes.forEach(this::apply);
+        deleteStaleKeys(shopsByType.keySet());
+        stringRedisTemplate.opsForValue().set(SHOP_TYPE_LIST_READY_KEY, "1");
+        ready = true;
+        log.info("店铺类型列表重建完成，店铺数量：{}，类型数量：{}", shops.size(), shopsByType.size());
+        return shops.size();
+    }
+
+    /**
+     * 删除不在typeIds中的类型的列表，只处理 shop:type:{typeId}:{sort}，正在写入的临时key不删除
+     */
+    private void deleteStaleKeys(Set<Long> typeIds) {
+        Set<String> sorts = Arrays.stream(Sort.values()).map(sort -> sort.name().toLowerCase()).collect(Collectors.toSet());
+        ScanOptions options = ScanOptions.scanOptions().match(SHOP_TYPE_LIST_KEY + "*").count(SWEEP_BATCH_SIZE).build();
+        List<String> stale = new ArrayList<>();
+        try (Cursor<byte[]> cursor = stringRedisTemplate.executeWithStickyConnection(connection -> connection.scan(options))) {
+            while (cursor.hasNext()) {
+                String key = new String(cursor.next(), StandardCharsets.UTF_8);
+                String[] parts = key.substring(SHOP_TYPE_LIST_KEY.length()).split(":");
+                if (parts.length == 2 && NumberUtil.isLong(parts[0]) && sorts.contains(parts[1])
+                        && !typeIds.contains(Long.valueOf(parts[0]))) {
+                    stale.add(key);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (!stale.isEmpty()) {
+            stringRedisTemplate.unlink(stale);
+        }
+    }
+
+    private static String key(Long typeId, Sort sort) {
+        return SHOP_TYPE_LIST_KEY + typeId + ":" + sort.name().toLowerCase();
+    }
+}
@@ -0,0 +1,227 @@
+package com.hmdp.utils;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hmdp.dto.Result;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static com.hmdp.utils.RedisConstants.SNAPSHOT_CHANNEL;
+import static com.hmdp.utils.RedisConstants.SNAPSHOT_VERSION_KEY;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 小型字典表（店铺类型等）的进程内只读快照
+ *              每张表一个不可变快照，包含数据、渲染好的Result json和ETag，读取时不做任何IO；
+ *              Redis中保存每个快照的版本号 snapshot:ver:{name}，数据变更后调用publish递增版本并发布通知，
+ *              各节点收到通知后重新加载并整体替换快照；通知可能丢失，所以还会定时比较版本号兜底
+ */
+@Slf4j
+@Component
+public class SnapshotRegistry implements MessageListener {
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public SnapshotRegistry(StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper,
+                            RedisMessageListenerContainer listenerContainer) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(SNAPSHOT_CHANNEL));
+    }
+
+    /**
+     * @Param name: 快照名
+     * @Param loader: 从数据库加载全部数据
+     * @return: void
+     * description: 注册快照，应用启动完成后加载
+     */
+    public void register(String name, Supplier<List<?>> loader) {
+        entries.put(name, new Entry(loader));
+    }
+
+    /**
+     * @Param name:
+     * @return: com.hmdp.utils.SnapshotRegistry.Snapshot
+     * description: 获取当前快照，只有启动后快照还未加载时才会同步加载一次
+     */
+    public Snapshot get(String name) {
+        Entry entry = entry(name);
+        Snapshot snapshot = entry.current;
+        if (snapshot == null) {
+            refresh(name, entry);
+            snapshot = entry.current;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @Param name:
+     * @return: void
+     * description: 数据变更后调用，递增版本号并通知所有节点重新加载
+     */
+    public void publish(String name) {
+        entry(name);
+        stringRedisTemplate.opsForValue().increment(SNAPSHOT_VERSION_KEY + name);
+        stringRedisTemplate.convertAndSend(SNAPSHOT_CHANNEL, name);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        entries.forEach(this::refreshQuietly);
+    }
+
+    /**
+     * 收到变更通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String name = new String(message.getBody(), StandardCharsets.UTF_8);
+        Entry entry = entries.get(name);
+        if (entry != null) {
+            refreshQuietly(name, entry);
+        }
+    }
+
+    /**
+     * 定时比较版本号，兜底丢失的通知
+     */
+    @Scheduled(fixedDelayString = "${hmdp.snapshot.poll-millis:5000}")
+    public void poll() {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<String> names = new ArrayList<>(entries.keySet());
+        List<String> keys = new ArrayList<>(names.size());
+        names.forEach(name -> keys.add(SNAPSHOT_VERSION_KEY + name));
+        List<String> versions;
+        try {
+            versions = stringRedisTemplate.opsForValue().multiGet(keys);
+        } catch (Exception e) {
+            log.warn("查询快照版本号失败", e);
+            return;
+        }
+        if (versions == null) {
+            return;
+        }
+        for (int i = 0; i < names.size(); i++) {
+            Entry entry = entries.get(names.get(i));
+            Snapshot snapshot = entry.current;
+            if (snapshot != null && snapshot.version != parseVersion(versions.get(i))) {
+                refreshQuietly(names.get(i), entry);
+            }
+        }
+    }
+
+    private Entry entry(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("未注册的快照：" + name);
+        }
+        return entry;
+    }
+
+    private void refreshQuietly(String name, Entry entry) {
+        try {
+            refresh(name, entry);
+        } catch (Exception e) {
+            log.error("快照 {} 加载失败，继续使用旧快照", name, e);
+        }
+    }
+
+    private void refresh(String name, Entry entry) {
+        synchronized (entry) {
+            // 先读版本号再加载数据，加载期间发生的变更会在下次比较版本号时发现
+            long version = parseVersion(stringRedisTemplate.opsForValue().get(SNAPSHOT_VERSION_KEY + name));
+            Snapshot current = entry.current;
+            if (current != null && current.version == version) {
+                return;
+            }
+            List<?> data = Collections.unmodifiableList(new ArrayList<>(entry.loader.get()));
+            byte[] body = render(Result.ok(data));
+            entry.current = new Snapshot(version, data, body, "\"" + DigestUtil.md5Hex(body) + "\"");
+            log.info("快照 {} 已更新，版本：{}，数量：{}", name, version, data.size());
+        }
+    }
+
+    private byte[] render(Result result) {
+        try {
+            return objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long parseVersion(String version) {
+        return version == null ? 0L : Long.parseLong(version);
+    }
+
+    private static class Entry {
+        final Supplier<List<?>> loader;
+        volatile Snapshot current;
+
+        Entry(Supplier<List<?>> loader) {
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * 不可变快照，替换时整体替换引用
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final List<?> data;
+        private final byte[] body;
+        private final String etag;
+
+        Snapshot(long version, List<?> data, byte[] body, String etag) {
+            this.version = version;
+            this.data = data;
+            this.body = body;
+            this.etag = etag;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> List<T> getData() {
+            return (List<T>) data;
+        }
+
+        /**
+         * 渲染好的Result json，调用方不要修改
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
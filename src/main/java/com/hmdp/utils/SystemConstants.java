@@ -5,4 +5,9 @@ public class SystemConstants {
     public static final String USER_NICK_NAME_PREFIX = "user_";
     public static final int DEFAULT_PAGE_SIZE = 5;
     public static final int MAX_PAGE_SIZE = 10;
+    public static final int REPLY_PREVIEW_SIZE = 3;
+    /**
+     * 内存索引排序查询允许翻到的最大页码，页码越大需要排序的数量越多
+     */
+    public static final int MAX_SEARCH_PAGE = 100;
 }
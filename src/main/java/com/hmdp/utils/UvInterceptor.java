@@ -0,0 +1,46 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.UserDTO;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description UV统计拦截器
+ *              访问带有@UvTracked的接口时记录访客，登录用户按用户id、未登录按IP区分，只写入本地缓冲，不访问Redis
+ */
+public class UvInterceptor implements HandlerInterceptor {
+
+    private final UvCounter uvCounter;
+
+    public UvInterceptor(UvCounter uvCounter) {
+        this.uvCounter = uvCounter;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        UvTracked tracked = ((HandlerMethod) handler).getMethodAnnotation(UvTracked.class);
+        if (tracked == null) {
+            return true;
+        }
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String id = variables == null ? null : variables.get(tracked.pathVariable());
+        if (StrUtil.isBlank(id)) {
+            return true;
+        }
+        UserDTO user = UserHolder.getUser();
+        uvCounter.record(tracked.type(), id, user != null ? user.getId().toString() : "ip:" + request.getRemoteAddr());
+        return true;
+    }
+}
@@ -0,0 +1,27 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author smin
+ * @date 2026/10/18
+ * @Description 标记需要统计独立访客（UV）的详情接口，由UvInterceptor处理
+ *              统计对象 = type + 路径变量pathVariable的值
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface UvTracked {
+
+    /**
+     * 统计对象的类型，例如 shop、blog
+     */
+    String type();
+
+    /**
+     * 统计对象id所在的路径变量名
+     */
+    String pathVariable() default "id";
+}
@@ -0,0 +1,11 @@
+-- 从数据库统计后写入计数hash，统计期间计数发生变化（占位被删除或替换）时不写入
+-- KEYS[1] 计数hash，KEYS[2] 占位key，ARGV[1] 占位值，ARGV[2] 过期时间（秒），ARGV[3...] 字段、值交替
+if(redis.call('get', KEYS[2]) ~= ARGV[1]) then
+    return 0
+end
+redis.call('del', KEYS[2])
+for i = 3, #ARGV, 2 do
+    redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+redis.call('expire', KEYS[1], ARGV[2])
+return 1
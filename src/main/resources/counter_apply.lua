@@ -0,0 +1,10 @@
+-- 把本地聚合的一批计数增量写入Redis hash，同一批次只会写入一次
+-- KEYS[1] 批次标记，KEYS[2..n] 每条增量所在的hash
+-- ARGV[1] 批次标记的过期时间（秒），之后每两个参数是一条增量的 字段、增量
+if(redis.call('set', KEYS[1], '1', 'NX', 'EX', ARGV[1]) == false) then
+    return 0
+end
+for i = 2, #KEYS do
+    redis.call('hincrby', KEYS[i], ARGV[2 * i - 2], ARGV[2 * i - 1])
+end
+return 1
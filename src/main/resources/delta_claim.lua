@@ -0,0 +1,12 @@
+-- 认领一批待写回的计数增量
+-- KEYS[1] 增量hash，KEYS[2] 正在写回的hash，ARGV[1] 新批次的id
+-- 上一批还没有写回完成时继续处理上一批，返回它的批次id；没有增量时返回false
+if(redis.call('exists', KEYS[2]) == 1) then
+    return redis.call('hget', KEYS[2], '#batch')
+end
+if(redis.call('exists', KEYS[1]) == 0) then
+    return false
+end
+redis.call('rename', KEYS[1], KEYS[2])
+redis.call('hset', KEYS[2], '#batch', ARGV[1])
+return ARGV[1]
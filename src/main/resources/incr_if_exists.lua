@@ -0,0 +1,10 @@
+-- 计数hash已经缓存时才累加，未缓存时下次读取会从数据库统计
+-- KEYS[1] 计数hash，KEYS[2] 可选，正在从数据库统计时的占位key，ARGV[1] 字段，ARGV[2] 增量
+if(redis.call('exists', KEYS[1]) == 1) then
+    return redis.call('hincrby', KEYS[1], ARGV[1], ARGV[2])
+end
+-- 统计结果可能不包含这次变化，删除占位使其不写入缓存
+if(KEYS[2]) then
+    redis.call('del', KEYS[2])
+end
+return -1
@@ -0,0 +1,22 @@
+-- 1.参数列表
+-- 1.1.博文点赞用户的zset key
+local likedKey = KEYS[1]
+-- 1.2.待写回数据库的点赞数增量hash key
+local deltaKey = KEYS[2]
+-- 1.3.用户id
+local userId = ARGV[1]
+-- 1.4.点赞时间
+local now = ARGV[2]
+-- 1.5.博文id
+local blogId = ARGV[3]
+
+-- 2.已经点赞过，取消点赞
+if(redis.call('zscore', likedKey, userId)) then
+    redis.call('zrem', likedKey, userId)
+    redis.call('hincrby', deltaKey, blogId, -1)
+    return 0
+end
+-- 3.未点赞，点赞
+redis.call('zadd', likedKey, now, userId)
+redis.call('hincrby', deltaKey, blogId, 1)
+return 1
@@ -0,0 +1,50 @@
+package com.hmdp.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UserServiceImplTest {
+
+    /**
+     * 按BITFIELD GET u{days} 的结果构造位图：第1天是最高位，第days天是最低位
+     */
+    private static long bits(int days, int... signedDays) {
+        long bits = 0;
+        for (int day : signedDays) {
+            bits |= 1L << (days - day);
+        }
+        return bits;
+    }
+
+    @Test
+    void streakWithinMonth() {
+        assertEquals(3, UserServiceImpl.currentStreak(bits(10, 5, 8, 9, 10), 10, bits(30, 30), 30));
+    }
+
+    @Test
+    void streakStartsFromYesterdayWhenNotSignedToday() {
+        assertEquals(2, UserServiceImpl.currentStreak(bits(10, 8, 9), 10, 0, 30));
+        assertEquals(0, UserServiceImpl.currentStreak(bits(10, 5), 10, 0, 30));
+    }
+
+    @Test
+    void streakContinuesIntoPreviousMonth() {
+        // 10月1日到3日都签到，9月最后两天也签到
+        assertEquals(5, UserServiceImpl.currentStreak(bits(3, 1, 2, 3), 3, bits(30, 1, 29, 30), 30));
+    }
+
+    @Test
+    void streakOnFirstDayOfMonth() {
+        assertEquals(3, UserServiceImpl.currentStreak(bits(1, 1), 1, bits(31, 30, 31), 31));
+        // 今天还没签到，只计算上个月末尾
+        assertEquals(2, UserServiceImpl.currentStreak(0, 1, bits(31, 30, 31), 31));
+    }
+
+    @Test
+    void streakCoversWholePreviousMonth() {
+        long previous = bits(28, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24,
+                25, 26, 27, 28);
+        assertEquals(30, UserServiceImpl.currentStreak(bits(2, 1, 2), 2, previous, 28));
+    }
+}
@@ -0,0 +1,70 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.CursorResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.BLOG_HOT_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BlogHotRankingTest {
+
+    /**
+     * 模拟ZREVRANGEBYSCORE：热度倒序，热度相同时按member字典序倒序
+     */
+    @SuppressWarnings("unchecked")
+    private static BlogHotRanking ranking(Map<String, Double> scores) {
+        List<ZSetOperations.TypedTuple<String>> sorted = scores.entrySet().stream()
+                .map(e -> (ZSetOperations.TypedTuple<String>) new DefaultTypedTuple<>(e.getKey(), e.getValue()))
+                .sorted(Comparator.comparing(ZSetOperations.TypedTuple<String>::getScore)
+                        .thenComparing(ZSetOperations.TypedTuple::getValue).reversed())
+                .collect(Collectors.toList());
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        ZSetOperations<String, String> zSet = mock(ZSetOperations.class);
+        when(template.opsForZSet()).thenReturn(zSet);
+        when(zSet.reverseRangeByScoreWithScores(eq(BLOG_HOT_KEY), anyDouble(), anyDouble(), anyLong(), anyLong()))
+                .thenAnswer(invocation -> {
+                    double max = invocation.getArgument(2);
+                    long offset = invocation.getArgument(3);
+                    long count = invocation.getArgument(4);
+                    return sorted.stream().filter(t -> t.getScore() <= max).skip(offset).limit(count)
+                            .collect(Collectors.toCollection(LinkedHashSet::new));
+                });
+        return new BlogHotRanking(template, null, null, 30);
+    }
+
+    @Test
+    void cursorPagesFollowHotOrderAcrossTies() {
+        Map<String, Double> scores = new HashMap<>();
+        scores.put("1", 9.0);
+        scores.put("2", 5.0);
+        scores.put("3", 5.0);
+        scores.put("4", 5.0);
+        scores.put("5", 5.0);
+        scores.put("6", 1.0);
+        BlogHotRanking ranking = ranking(scores);
+        List<Long> all = new ArrayList<>();
+        String cursor = "";
+        do {
+            CursorResult<Long> page = ranking.page(cursor, 2);
+            assertNotNull(page);
+            all.addAll(page.getList());
+            cursor = page.getCursor();
+        } while (cursor != null);
+        assertEquals(Arrays.asList(1L, 5L, 4L, 3L, 2L, 6L), all);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        BlogHotRanking ranking = ranking(Collections.singletonMap("1", 1.0));
+        assertNull(ranking.page("not-a-cursor", 2));
+    }
+}
@@ -0,0 +1,144 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Blog;
+import com.hmdp.mapper.BlogMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BlogSearchIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private static Blog blog(long id, String title, String content, int liked) {
+        Blog blog = new Blog();
+        blog.setId(id);
+        blog.setTitle(title);
+        blog.setContent(content);
+        blog.setLiked(liked);
+        return blog;
+    }
+
+    private BlogSearchIndex index(Path snapshot, Blog... blogs) {
+        BlogMapper blogMapper = mock(BlogMapper.class);
+        when(blogMapper.selectList(any())).thenReturn(Arrays.asList(blogs));
+        return new BlogSearchIndex(blogMapper, null, snapshot.toString());
+    }
+
+    @Test
+    void tokenizeSplitsCjkIntoBigramsAndLatinIntoWords() {
+        assertEquals(Arrays.asList("今天", "天去", "hot", "pot", "吃火", "火锅", "2024", "年"),
+                BlogSearchIndex.tokenize("今天去Hot-Pot吃火锅！2024年"));
+        assertEquals(Collections.singletonList("好"), BlogSearchIndex.tokenize(" 好 "));
+        assertEquals(Arrays.asList("すし", "おい", "いし", "しい"), BlogSearchIndex.tokenize("すし，おいしい"));
+        assertEquals(Arrays.asList("三文", "文鱼", "鱼"), BlogSearchIndex.tokenize("三文鱼", true));
+        assertTrue(BlogSearchIndex.tokenize(null).isEmpty());
+        assertTrue(BlogSearchIndex.tokenize("，。!?").isEmpty());
+    }
+
+    @Test
+    void searchRanksTitleMatchesAndLikes() {
+        BlogSearchIndex index = index(dir.resolve("idx"),
+                blog(1, "周末探店", "这家火锅味道不错", 0),
+                blog(2, "火锅推荐", "本地人常去的店", 0),
+                blog(3, "日料", "三文鱼很新鲜", 0),
+                blog(4, "周末探店", "这家火锅味道不错", 1000));
+        index.rebuild();
+        List<Long> ids = index.search("火锅", 1, 10);
+        assertEquals(3, ids.size());
+        // 标题命中的权重更高
+        assertTrue(ids.indexOf(2L) < ids.indexOf(1L));
+        // 内容相同时点赞多的靠前
+        assertTrue(ids.indexOf(4L) < ids.indexOf(1L));
+        assertEquals(Collections.singletonList(3L), index.search("鱼", 1, 10));
+        assertEquals(Collections.singletonList(ids.get(1)), index.search("火锅", 2, 1));
+    }
+
+    @Test
+    void singleCharMatchesEndOfRun() {
+        BlogSearchIndex index = index(dir.resolve("idx"),
+                blog(1, "日料", "三文鱼", 0),
+                blog(2, "烤鱼", "", 0),
+                blog(3, "鱼丸", "", 0),
+                blog(4, "火锅", "", 0));
+        index.rebuild();
+        List<Long> ids = index.search("鱼", 1, 10);
+        assertEquals(3, ids.size());
+        assertTrue(ids.containsAll(Arrays.asList(1L, 2L, 3L)));
+        assertEquals(Collections.singletonList(1L), index.search("三文鱼", 1, 10));
+    }
+
+    @Test
+    void refreshLikedOverwritesWithDatabaseCounts() {
+        BlogMapper blogMapper = mock(BlogMapper.class);
+        BlogSearchIndex index = new BlogSearchIndex(blogMapper, null, dir.resolve("idx").toString());
+        when(blogMapper.selectList(any())).thenReturn(
+                Arrays.asList(blog(1, "火锅", "", 1000), blog(2, "火锅", "", 0)),
+                Arrays.asList(blog(1, "火锅", "", 0), blog(2, "火锅", "", 1000)));
+        index.rebuild();
+        assertEquals(Arrays.asList(1L, 2L), index.search("火锅", 1, 10));
+        // 其他节点写回的点赞数
+        index.refreshLiked();
+        assertEquals(Arrays.asList(2L, 1L), index.search("火锅", 1, 10));
+    }
+
+    @Test
+    void searchRejectsInvalidPages() {
+        BlogSearchIndex index = index(dir.resolve("idx"), blog(1, "火锅", "", 0));
+        index.rebuild();
+        assertTrue(index.search("火锅", 0, 10).isEmpty());
+        assertTrue(index.search("火锅", -5, 10).isEmpty());
+        assertTrue(index.search("火锅", Integer.MAX_VALUE, 10).isEmpty());
+    }
+
+    @Test
+    void snapshotRoundTrip() {
+        Path snapshot = dir.resolve("blog-search.idx");
+        BlogSearchIndex index = index(snapshot,
+                blog(1, "火锅推荐", "毛肚 鸭肠 hot pot", 3),
+                blog(2, "日料", "三文鱼 hot", 8));
+        index.rebuild();
+        index.addLiked(Collections.singletonMap(1L, 2));
+        index.snapshot();
+        assertTrue(Files.exists(snapshot));
+
+        BlogSearchIndex loaded = index(snapshot);
+        assertTrue(loaded.loadSnapshot());
+        for (String keyword : Arrays.asList("火锅", "hot", "pot", "鱼", "毛肚")) {
+            assertEquals(index.search(keyword, 1, 10), loaded.search(keyword, 1, 10), keyword);
+        }
+        // 从快照恢复的词表支持增量更新
+        loaded.index(blog(1, "烤肉", "", 5));
+        assertTrue(loaded.search("火锅", 1, 10).isEmpty());
+        assertEquals(Collections.singletonList(1L), loaded.search("烤肉", 1, 10));
+    }
+
+    @Test
+    void loadSnapshotRejectsMissingOrCorruptFile() throws Exception {
+        Path snapshot = dir.resolve("blog-search.idx");
+        assertFalse(index(snapshot).loadSnapshot());
+        Files.write(snapshot, new byte[]{1, 2, 3});
+        assertFalse(index(snapshot).loadSnapshot());
+    }
+
+    @Test
+    void blogsIndexedDuringRebuildAreReplayed() {
+        BlogMapper blogMapper = mock(BlogMapper.class);
+        BlogSearchIndex index = new BlogSearchIndex(blogMapper, null, dir.resolve("idx").toString());
+        when(blogMapper.selectList(any())).thenAnswer(invocation -> {
+            index.index(blog(2, "新发布的火锅", "", 0));
+            return Collections.singletonList(blog(1, "火锅", "", 0));
+        });
+        index.rebuild();
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), new HashSet<>(index.search("火锅", 1, 10)));
+    }
+}
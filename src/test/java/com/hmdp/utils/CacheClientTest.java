@@ -0,0 +1,19 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheClientTest {
+
+    @Test
+    void generationOfParsesNamespacedKeys() {
+        assertEquals(3L, CacheClient.generationOf("cache:shop:", "cache:shop:v3:1"));
+        assertEquals(12L, CacheClient.generationOf("cache:shop:", "cache:shop:v12:abc:d"));
+        // SCAN cache:shop:v* 也会匹配到不是namespacedKey生成的key，不能删除
+        assertNull(CacheClient.generationOf("cache:shop:", "cache:shop:vip:1"));
+        assertNull(CacheClient.generationOf("cache:shop:", "cache:shop:v:1"));
+        assertNull(CacheClient.generationOf("cache:shop:", "cache:shop:v3"));
+        assertNull(CacheClient.generationOf("cache:shop:", "cache:blog:v3:1"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.dto.CursorResult;
+import com.hmdp.entity.BlogComments;
+import com.hmdp.mapper.BlogCommentsMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class KeysetPagerTest {
+
+    private static List<BlogComments> comments(int count) {
+        List<BlogComments> comments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            comments.add(new BlogComments().setId(100L - i).setLiked(50 - i));
+        }
+        return comments;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static QueryWrapper<BlogComments> page(String sortColumn, String cursor, boolean desc, int rows) {
+        BlogCommentsMapper mapper = mock(BlogCommentsMapper.class);
+        when(mapper.selectList(any())).thenReturn(comments(rows));
+        KeysetPager.page(mapper, new QueryWrapper<>(), sortColumn, BlogComments::getLiked, BlogComments::getId,
+                cursor, 10, desc);
+        ArgumentCaptor<QueryWrapper<BlogComments>> captor = ArgumentCaptor.forClass(QueryWrapper.class);
+        verify(mapper).selectList(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    void cursorRoundTrip() {
+        assertArrayEquals(new long[]{42, 7}, KeysetPager.decode(KeysetPager.encode(42, 7)));
+        assertArrayEquals(new long[]{-3, Long.MAX_VALUE}, KeysetPager.decode(KeysetPager.encode(-3, Long.MAX_VALUE)));
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        assertNull(KeysetPager.decode(null));
+        assertNull(KeysetPager.decode(""));
+        assertNull(KeysetPager.decode("not-a-cursor"));
+        assertNull(KeysetPager.decode(KeysetPager.encode(1, 2).substring(0, 2)));
+        BlogCommentsMapper mapper = mock(BlogCommentsMapper.class);
+        assertNull(KeysetPager.page(mapper, new QueryWrapper<>(), "id", BlogComments::getId, BlogComments::getId,
+                "not-a-cursor", 10, true));
+        verify(mapper, never()).selectList(any());
+    }
+
+    @Test
+    void blankCursorStartsFromFirstPage() {
+        QueryWrapper<BlogComments> wrapper = page("id", "", true, 0);
+        String sql = wrapper.getSqlSegment();
+        assertFalse(sql.contains("id <"), sql);
+        assertTrue(sql.contains("ORDER BY id DESC"), sql);
+    }
+
+    @Test
+    void nextCursorPointsAtLastRowOfPage() {
+        BlogCommentsMapper mapper = mock(BlogCommentsMapper.class);
+        when(mapper.selectList(any())).thenReturn(comments(11));
+        CursorResult<BlogComments> page = KeysetPager.page(mapper, new QueryWrapper<>(), "liked",
+                BlogComments::getLiked, BlogComments::getId, "", 10, true);
+        assertEquals(10, page.getList().size());
+        // 第10条：id=91，liked=41
+        assertArrayEquals(new long[]{41, 91}, KeysetPager.decode(page.getCursor()));
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        BlogCommentsMapper mapper = mock(BlogCommentsMapper.class);
+        when(mapper.selectList(any())).thenReturn(comments(10));
+        CursorResult<BlogComments> page = KeysetPager.page(mapper, new QueryWrapper<>(), "id",
+                BlogComments::getId, BlogComments::getId, "", 10, true);
+        assertEquals(10, page.getList().size());
+        assertNull(page.getCursor());
+    }
+
+    @Test
+    void seekBySortColumnAndIdDesc() {
+        QueryWrapper<BlogComments> wrapper = page("liked", KeysetPager.encode(41, 91), true, 0);
+        String sql = wrapper.getSqlSegment().replaceAll("#\\{[^}]+}", "?");
+        assertTrue(sql.contains("(liked < ? OR (liked = ? AND id < ?))"), sql);
+        assertTrue(sql.contains("ORDER BY liked DESC,id DESC"), sql);
+        assertEquals(" LIMIT 11", wrapper.getSqlSegment().substring(wrapper.getSqlSegment().length() - 9));
+        assertTrue(wrapper.getParamNameValuePairs().values().containsAll(Arrays.asList(41L, 91L)));
+    }
+
+    @Test
+    void seekByIdAsc() {
+        QueryWrapper<BlogComments> wrapper = page("id", KeysetPager.encode(5, 5), false, 0);
+        String sql = wrapper.getSqlSegment().replaceAll("#\\{[^}]+}", "?");
+        assertTrue(sql.contains("(id > ?)"), sql);
+        assertTrue(sql.contains("ORDER BY id ASC"), sql);
+    }
+}
@@ -0,0 +1,92 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RebuildableShopIndexTest {
+
+    /**
+     * 只保存店铺名称的索引
+     */
+    private static class NameIndex extends RebuildableShopIndex<Map<Long, String>> {
+
+        private Map<Long, String> names = new HashMap<>();
+
+        NameIndex(ShopMapper shopMapper) {
+            super(shopMapper, null);
+        }
+
+        @Override
+        protected QueryWrapper<Shop> query() {
+            return new QueryWrapper<>();
+        }
+
+        @Override
+        protected Map<Long, String> build(List<Shop> shops) {
+            Map<Long, String> state = new HashMap<>();
+            shops.forEach(shop -> state.put(shop.getId(), shop.getName()));
+            return state;
+        }
+
+        @Override
+        protected void swap(Map<Long, String> state) {
+            names = state;
+        }
+
+        @Override
+        protected void apply(Shop shop) {
+            names.put(shop.getId(), shop.getName());
+        }
+
+        @Override
+        protected void onRebuilt(Map<Long, String> state) {
+        }
+    }
+
+    private static Shop shop(long id, String name) {
+        return new Shop().setId(id).setName(name);
+    }
+
+    @Test
+    void changesDuringRebuildAreReplayed() {
+        ShopMapper shopMapper = mock(ShopMapper.class);
+        NameIndex index = new NameIndex(shopMapper);
+        when(shopMapper.selectList(any())).thenAnswer(invocation -> {
+            // 模拟数据库查询期间有店铺被修改、新增，查询结果仍然是旧数据
+            index.onShopChanged(new ShopChangedEvent(this, shop(1, "旧"), shop(1, "新")));
+            index.onShopChanged(new ShopChangedEvent(this, null, shop(3, "新增")));
+            return Arrays.asList(shop(1, "旧"), shop(2, "不变"));
+        });
+        assertFalse(index.isReady());
+        index.rebuild();
+        assertTrue(index.isReady());
+        assertEquals("新", index.names.get(1L));
+        assertEquals("不变", index.names.get(2L));
+        assertEquals("新增", index.names.get(3L));
+    }
+
+    @Test
+    void changesAfterRebuildAreNotQueued() {
+        ShopMapper shopMapper = mock(ShopMapper.class);
+        NameIndex index = new NameIndex(shopMapper);
+        when(shopMapper.selectList(any())).thenReturn(Arrays.asList(shop(1, "旧")));
+        index.rebuild();
+        index.onShopChanged(new ShopChangedEvent(this, shop(1, "旧"), shop(1, "新")));
+        // 第二次重建读到的是数据库中已经更新的数据，之前的变更不会被重放覆盖
+        when(shopMapper.selectList(any())).thenReturn(Arrays.asList(shop(1, "最新")));
+        index.rebuild();
+        assertEquals("最新", index.names.get(1L));
+    }
+}
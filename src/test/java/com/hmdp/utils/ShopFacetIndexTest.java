@@ -0,0 +1,99 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.FacetResult;
+import com.hmdp.dto.ShopFilter;
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShopFacetIndexTest {
+
+    private ShopMapper shopMapper;
+    private ShopOpenHoursIndex openHoursIndex;
+    private ShopFacetIndex index;
+
+    private static Shop shop(long id, long typeId, String area, long avgPrice, int score, String openHours) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setTypeId(typeId);
+        shop.setArea(area);
+        shop.setAvgPrice(avgPrice);
+        shop.setScore(score);
+        shop.setOpenHours(openHours);
+        return shop;
+    }
+
+    @BeforeEach
+    void setUp() {
+        shopMapper = mock(ShopMapper.class);
+        when(shopMapper.selectList(any())).thenReturn(Arrays.asList(
+                shop(1, 1, "西湖", 80, 47, "00:00-24:00"),
+                shop(2, 1, "西湖", 120, 42, "00:00-24:00"),
+                shop(3, 1, "滨江", 30, 38, "abc"),
+                shop(4, 2, "西湖", 60, 45, "00:00-24:00"),
+                shop(5, 2, "滨江", 600, 49, "abc")));
+        openHoursIndex = new ShopOpenHoursIndex(shopMapper, null);
+        index = new ShopFacetIndex(shopMapper, null, openHoursIndex);
+        index.rebuild();
+    }
+
+    private static ShopFilter filter(Long typeId, String area, Integer priceBand, Integer minScore) {
+        ShopFilter filter = new ShopFilter();
+        filter.setTypeId(typeId);
+        filter.setArea(area);
+        filter.setPriceBand(priceBand);
+        filter.setMinScore(minScore);
+        return filter;
+    }
+
+    @Test
+    void filterIntersectsConditionsAndSortsByScore() {
+        FacetResult<Long> result = index.filter(filter(1L, "西湖", null, null), 1, 10);
+        assertEquals(Arrays.asList(1L, 2L), result.getList());
+        assertEquals(2, result.getTotal());
+
+        result = index.filter(filter(null, null, null, 45), 1, 10);
+        assertEquals(Arrays.asList(5L, 1L, 4L), result.getList());
+        assertEquals(Collections.singletonList(1L), index.filter(filter(null, null, null, 45), 2, 1).getList());
+        // 页码乘以每页数量溢出时不能回到第一页
+        assertTrue(index.filter(filter(null, null, null, 45), Integer.MAX_VALUE, 10).getList().isEmpty());
+    }
+
+    @Test
+    void facetCountsIgnoreTheirOwnCondition() {
+        FacetResult<Long> result = index.filter(filter(1L, "西湖", null, null), 1, 10);
+        // 类型的数量只应用商圈条件：西湖有类型1两家、类型2一家
+        assertEquals(2, result.getFacets().get(ShopFacetIndex.FACET_TYPE).get("1"));
+        assertEquals(1, result.getFacets().get(ShopFacetIndex.FACET_TYPE).get("2"));
+        // 商圈的数量只应用类型条件
+        assertEquals(2, result.getFacets().get(ShopFacetIndex.FACET_AREA).get("西湖"));
+        assertEquals(1, result.getFacets().get(ShopFacetIndex.FACET_AREA).get("滨江"));
+        // 价格区间：80元、120元各一家
+        assertEquals(1, result.getFacets().get(ShopFacetIndex.FACET_PRICE).get("1"));
+        assertEquals(1, result.getFacets().get(ShopFacetIndex.FACET_PRICE).get("2"));
+        // 评分档位是累计数量
+        assertEquals(1, result.getFacets().get(ShopFacetIndex.FACET_SCORE).get("45"));
+        assertEquals(2, result.getFacets().get(ShopFacetIndex.FACET_SCORE).get("40"));
+    }
+
+    @Test
+    void openNowRequiresOpenHoursIndex() {
+        ShopFilter filter = filter(null, null, null, null);
+        filter.setOpenNow(true);
+        assertThrows(IllegalStateException.class, () -> index.filter(filter, 1, 10));
+
+        openHoursIndex.rebuild();
+        FacetResult<Long> result = index.filter(filter, 1, 10);
+        assertEquals(Arrays.asList(1L, 4L, 2L), result.getList());
+        assertEquals(3, result.getFacets().get(ShopFacetIndex.FACET_OPEN).get("true"));
+    }
+}
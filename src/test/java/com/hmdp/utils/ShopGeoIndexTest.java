@@ -0,0 +1,76 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShopGeoIndexTest {
+
+    private static Shop shop(long id, long typeId, double x, double y) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setTypeId(typeId);
+        shop.setX(x);
+        shop.setY(y);
+        return shop;
+    }
+
+    private static List<Long> ids(List<ShopGeoIndex.Neighbor> neighbors) {
+        return neighbors.stream().map(ShopGeoIndex.Neighbor::getShopId).collect(Collectors.toList());
+    }
+
+    private ShopGeoIndex index(Shop... shops) {
+        ShopMapper shopMapper = mock(ShopMapper.class);
+        when(shopMapper.selectList(any())).thenReturn(Arrays.asList(shops));
+        ShopGeoIndex index = new ShopGeoIndex(shopMapper, null);
+        index.rebuild();
+        return index;
+    }
+
+    @Test
+    void radiusSortsByDistanceAndFiltersType() {
+        ShopGeoIndex index = index(
+                shop(1, 1, 120.1500, 30.2500),
+                shop(2, 1, 120.1600, 30.2500),
+                shop(3, 2, 120.1510, 30.2500),
+                shop(4, 1, 120.3000, 30.2500));
+        assertEquals(Arrays.asList(1L, 2L), ids(index.radius(120.1490, 30.2500, 5000, 1L, 10)));
+        assertEquals(Arrays.asList(1L, 3L, 2L), ids(index.radius(120.1490, 30.2500, 5000, null, 10)));
+        assertEquals(Collections.singletonList(1L), ids(index.radius(120.1490, 30.2500, 5000, null, 1)));
+    }
+
+    @Test
+    void radiusRejectsOutOfRangeCoordinates() {
+        ShopGeoIndex index = index(shop(1, 1, 120.15, 30.25));
+        assertTrue(index.radius(1e300, 0, 5000, 1L, 10).isEmpty());
+        assertTrue(index.radius(0, 90, 5000, 1L, 10).isEmpty());
+        assertTrue(index.radius(Double.NaN, 0, 5000, 1L, 10).isEmpty());
+        assertTrue(index.nearest(-1e300, 0, 5, null).isEmpty());
+        assertFalse(ShopGeoIndex.isValid(180.0001, 0));
+        assertTrue(ShopGeoIndex.isValid(-180, -85.05));
+    }
+
+    @Test
+    void radiusNearLimitsTerminates() {
+        ShopGeoIndex index = index(shop(1, 1, 179.999, 85.05), shop(2, 1, -179.999, 85.05));
+        // 高纬度时经度方向的跨度被限制在合法网格内，不会无限扫描
+        assertEquals(Collections.singletonList(1L), ids(index.radius(179.999, 85.05, 5000, 1L, 10)));
+        assertTrue(index.radius(-179.999, -85.05, 5000, null, 10).isEmpty());
+    }
+
+    @Test
+    void nearestExpandsRings() {
+        ShopGeoIndex index = index(shop(1, 1, 120.00, 30.00), shop(2, 1, 120.05, 30.00), shop(3, 1, 120.30, 30.00));
+        assertEquals(Arrays.asList(1L, 2L), ids(index.nearest(120.001, 30.00, 2, 1L)));
+    }
+}
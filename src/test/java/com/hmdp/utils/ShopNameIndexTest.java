@@ -0,0 +1,49 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShopNameIndexTest {
+
+    private static Shop shop(long id, String name, int score) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName(name);
+        shop.setScore(score);
+        shop.setSold(0);
+        return shop;
+    }
+
+    @Test
+    void searchRanksByScoreAndPages() {
+        ShopMapper shopMapper = mock(ShopMapper.class);
+        when(shopMapper.selectList(any())).thenReturn(Arrays.asList(
+                shop(1, "海底捞火锅", 40), shop(2, "小龙坎火锅", 47), shop(3, "外婆家", 45)));
+        ShopNameIndex index = new ShopNameIndex(shopMapper, null);
+        index.rebuild();
+        assertEquals(Arrays.asList(2L, 1L), index.search("火锅", 1, 10));
+        assertEquals(Collections.singletonList(1L), index.search("火锅", 2, 1));
+        assertEquals(Collections.singletonList("小龙坎火锅"), index.suggest("小龙", 10));
+    }
+
+    @Test
+    void searchRejectsInvalidPages() {
+        ShopMapper shopMapper = mock(ShopMapper.class);
+        when(shopMapper.selectList(any())).thenReturn(Collections.singletonList(shop(1, "a店", 40)));
+        ShopNameIndex index = new ShopNameIndex(shopMapper, null);
+        index.rebuild();
+        assertTrue(index.search("a", 0, 10).isEmpty());
+        assertTrue(index.search("a", -1, 10).isEmpty());
+        assertTrue(index.search("a", 100000000, 10).isEmpty());
+        assertTrue(index.search("a", Integer.MAX_VALUE, 10).isEmpty());
+    }
+}
@@ -0,0 +1,89 @@
+package com.hmdp.utils;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.mapper.ShopMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static com.hmdp.utils.ShopOpenHoursIndex.SLOTS_PER_DAY;
+import static com.hmdp.utils.ShopOpenHoursIndex.SLOTS_PER_WEEK;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShopOpenHoursIndexTest {
+
+    /**
+     * 2026-10-19 是星期一
+     */
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2026, 10, 19, 0, 0);
+
+    private static boolean open(long[] bits, int slot) {
+        return (bits[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private static int count(long[] bits) {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    @Test
+    void parseSimpleRange() {
+        long[] bits = ShopOpenHoursIndex.parse("10:00-22:00");
+        assertEquals(24 * 7, count(bits));
+        assertFalse(open(bits, 19));
+        assertTrue(open(bits, 20));
+        assertTrue(open(bits, 43));
+        assertFalse(open(bits, 44));
+    }
+
+    @Test
+    void parsePartialSlotCountsAsOpen() {
+        long[] bits = ShopOpenHoursIndex.parse("10:15-10:45");
+        assertTrue(open(bits, 20));
+        assertTrue(open(bits, 21));
+        assertEquals(2 * 7, count(bits));
+    }
+
+    @Test
+    void parseOvernightWrapsIntoNextDayAndWeek() {
+        long[] bits = ShopOpenHoursIndex.parse("22:00-02:00");
+        assertEquals(8 * 7, count(bits));
+        // 星期日22点开始的营业时间延续到星期一凌晨
+        assertTrue(open(bits, 6 * SLOTS_PER_DAY + 44));
+        assertTrue(open(bits, 0));
+        assertTrue(open(bits, 3));
+        assertFalse(open(bits, 4));
+    }
+
+    @Test
+    void parseFullDayAndMultipleRanges() {
+        assertEquals(SLOTS_PER_WEEK, count(ShopOpenHoursIndex.parse("00:00-24:00")));
+        assertEquals(SLOTS_PER_WEEK, count(ShopOpenHoursIndex.parse("00:00-00:00")));
+        long[] bits = ShopOpenHoursIndex.parse("10:00-14:00，17：00~21:00");
+        assertEquals(16 * 7, count(bits));
+        assertFalse(open(bits, 28));
+    }
+
+    @Test
+    void parseRejectsInvalidInput() {
+        assertNull(ShopOpenHoursIndex.parse(null));
+        assertNull(ShopOpenHoursIndex.parse(" "));
+        assertNull(ShopOpenHoursIndex.parse("全天营业"));
+        assertNull(ShopOpenHoursIndex.parse("25:00-26:00"));
+        assertNull(ShopOpenHoursIndex.parse("10:60-12:00"));
+    }
+
+    @Test
+    void slotOfStartsOnMonday() {
+        assertEquals(0, ShopOpenHoursIndex.slotOf(MONDAY));
+        assertEquals(1, ShopOpenHoursIndex.slotOf(MONDAY.plusMinutes(30)));
+        assertEquals(SLOTS_PER_WEEK - 1, ShopOpenHoursIndex.slotOf(MONDAY.minusMinutes(1)));
+    }
+}